@@ -23,6 +23,7 @@ import java.lang.annotation.*;
 /**
  * <li>作用于Controller 为当前方法开启到指定数据库的链接
  * <li>@DbName参数指定model映射的数据库
+ * <li>access指定只读或读写, 方法上的值优先于类上的值
  *
  * @author Endless
  */
@@ -35,4 +36,14 @@ public @interface EnableModel {
 
     String[] value() default {};
 
+    /**
+     * 读写模式 AUTO时只映射GET/HEAD请求的方法为只读<br>
+     * 只读时链接设置为 readOnly 且不开启事务, 可路由到从库
+     */
+    Access access() default Access.AUTO;
+
+    enum Access {
+        AUTO, READ_ONLY, READ_WRITE
+    }
+
 }
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.configuration;
+
+import com.github.endless.activejdbc.core.ApplicationContextHelper;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * starter 配置项 前缀 activejdbc
+ *
+ * @author Endless
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "activejdbc")
+public class ActiveJdbcProperties {
+
+	private static final ActiveJdbcProperties DEFAULTS = new ActiveJdbcProperties();
+	private static volatile ActiveJdbcProperties current;
+
+	/**
+	 * 启动时表结构扫描
+	 */
+	private Introspection introspection = new Introspection();
+
+	/**
+	 * 表结构快照
+	 */
+	private Snapshot snapshot = new Snapshot();
+
+	/**
+	 * 动态model
+	 */
+	private Models models = new Models();
+
+	/**
+	 * 从库 读写分离
+	 */
+	private Replicas replicas = new Replicas();
+
+	/**
+	 * PreparedStatement缓存
+	 */
+	private Statements statements = new Statements();
+
+	/**
+	 * 分页查询
+	 */
+	private Pagination pagination = new Pagination();
+
+	/**
+	 * 流式读取与导出
+	 */
+	private Streaming streaming = new Streaming();
+
+	/**
+	 * 批量写入
+	 */
+	private Batch batch = new Batch();
+
+	/**
+	 * 树形加载子表
+	 */
+	private Include include = new Include();
+
+	/**
+	 * 获取当前配置 容器未启动时返回默认配置
+	 */
+	public static ActiveJdbcProperties current() {
+		if (current != null) {
+			return current;
+		}
+		ApplicationContext context = ApplicationContextHelper.getApplicationContext();
+		if (context == null) {
+			return DEFAULTS;
+		}
+		ActiveJdbcProperties properties = context.getBeanProvider(ActiveJdbcProperties.class).getIfAvailable();
+		if (properties == null) {
+			return DEFAULTS;
+		}
+		return current = properties;
+	}
+
+	@Data
+	public static class Introspection {
+
+		/**
+		 * 扫描线程数上限 每个线程独占一个数据库链接
+		 */
+		private int threads = Math.min(8, Runtime.getRuntime().availableProcessors());
+
+		/**
+		 * information_schema 不可用时 每个线程逐表扫描的表数量
+		 */
+		private int batchSize = 200;
+
+		/**
+		 * 是否优先使用 information_schema 批量查询
+		 */
+		private boolean bulk = true;
+	}
+
+	@Data
+	public static class Snapshot {
+
+		/**
+		 * 是否启用表结构快照 启用后表结构未变化时跳过扫描
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * 快照文件路径
+		 */
+		private String path = "activejdbc-schema.snapshot";
+	}
+
+	@Data
+	public static class Models {
+
+		/**
+		 * 启动时只登记表名, 首次访问时才生成model并注册元数据
+		 */
+		private boolean lazy = false;
+	}
+
+	@Data
+	public static class Replicas {
+
+		/**
+		 * 从库负载均衡策略
+		 */
+		private LoadBalancer.Strategy loadBalance = LoadBalancer.Strategy.ROUND_ROBIN;
+
+		/**
+		 * 从库健康检查间隔 毫秒, 0 不检查
+		 */
+		private long healthCheckInterval = 5000;
+
+		/**
+		 * 从库不可用时的剔除时长 毫秒
+		 */
+		private long evictionTime = 30000;
+
+		/**
+		 * 健康检查 Connection.isValid 超时 秒
+		 */
+		private int validationTimeout = 2;
+	}
+
+	@Data
+	public static class Statements {
+
+		/**
+		 * 链接借出期间是否缓存相同SQL的PreparedStatement
+		 */
+		private boolean cache = true;
+
+		/**
+		 * 每个链接最多缓存的语句数
+		 */
+		private int cacheSize = 64;
+	}
+
+	@Data
+	public static class Pagination {
+
+		/**
+		 * 是否在另一个链接上与分页查询并行统计总数, 处于事务中时仍顺序执行
+		 */
+		private boolean concurrentCount = false;
+
+		/**
+		 * 并行统计总数的超时时间(毫秒), 超时后取消统计并不返回总数
+		 */
+		private long countTimeout = 10000;
+
+		/**
+		 * 分页总数缓存最多保留的条目数, 0 不缓存
+		 */
+		private int countCacheSize = 1000;
+
+		/**
+		 * 分页总数缓存的过期时间(毫秒), 0 不缓存
+		 */
+		private long countCacheTtl = 5000;
+
+		/**
+		 * 按表名(小写)单独设置的过期时间(毫秒), 0 表示该表不缓存
+		 */
+		private Map<String, Long> countCacheTtls = new HashMap<>();
+
+		/**
+		 * 没有声明回调且未开启缓存的model, 分页结果直接由结果集写为json, 不创建 Model 与 Map
+		 */
+		private boolean directJson = true;
+	}
+
+	@Data
+	public static class Streaming {
+
+		/**
+		 * 游标每次从数据库读取的行数, 也是导出时刷新输出流的间隔; MySQL 使用驱动的逐行流式读取
+		 */
+		private int fetchSize = 1000;
+	}
+
+	@Data
+	public static class Batch {
+
+		/**
+		 * 每个JDBC批次包含的行数
+		 */
+		private int size = 500;
+	}
+
+	@Data
+	public static class Include {
+
+		/**
+		 * includeAll 向下加载的最大层数(不含根)
+		 */
+		private int maxDepth = 3;
+
+		/**
+		 * 每条 IN 查询最多绑定的参数个数, 实际取值不超过数据库的限制(Oracle 1000, SQL Server 2000)
+		 */
+		private int chunkSize = 1000;
+	}
+}
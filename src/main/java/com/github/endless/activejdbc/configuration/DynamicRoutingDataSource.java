@@ -19,19 +19,197 @@
 package com.github.endless.activejdbc.configuration;
 
 import com.github.endless.activejdbc.core.ApplicationContextHelper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * 动态数据源 targetDataSources 为各逻辑数据源的主库<br>
+ * 配置从库组后, 只读且不在事务中的请求按负载均衡策略路由到从库, 写请求与事务中的读请求固定使用主库;
+ * 从库获取链接失败或健康检查失败时被临时剔除, 全部剔除时退回主库
+ *
  * @author Endless
  */
 @Log4j2
-public class DynamicRoutingDataSource extends AbstractRoutingDataSource {
+public class DynamicRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    /**
+     * 每 ROUTE_LOG_SAMPLE 次路由输出一条debug日志, 必须是2的幂
+     */
+    private static final int ROUTE_LOG_SAMPLE = 1024;
+
+    /**
+     * 数据源key > 从库组
+     */
+    private Map<Object, ReplicaGroup> replicaGroups = Collections.emptyMap();
+    private ScheduledExecutorService healthCheck;
+    private final AtomicLong routes = new AtomicLong();
+    private final Map<Object, Counter> primaryCounters = new ConcurrentHashMap<>();
+    private final Map<Replica, Counter> replicaCounters = new ConcurrentHashMap<>();
+
+    public void setReplicaGroups(Map<Object, ReplicaGroup> replicaGroups) {
+        this.replicaGroups = new HashMap<>(replicaGroups);
+    }
+
+    /**
+     * 每个数据源key配置一个或多个从库, 使用 activejdbc.replicas.load-balance 指定的策略
+     */
+    public void setReplicas(Map<Object, Map<String, DataSource>> replicas) {
+        ActiveJdbcProperties.Replicas config = ActiveJdbcProperties.current().getReplicas();
+        Map<Object, ReplicaGroup> groups = new HashMap<>();
+        replicas.forEach((key, dataSources) -> {
+            List<Replica> members = new ArrayList<>();
+            dataSources.forEach((name, dataSource) -> members.add(new Replica(name, dataSource)));
+            groups.put(key, new ReplicaGroup(members, LoadBalancer.of(config.getLoadBalance())));
+        });
+        setReplicaGroups(groups);
+    }
+
+    /**
+     * 每个数据源key一个从库
+     */
+    public void setReadOnlyDataSources(Map<Object, DataSource> readOnlyDataSources) {
+        Map<Object, Map<String, DataSource>> replicas = new HashMap<>();
+        readOnlyDataSources.forEach((key, dataSource) -> replicas.put(key, Collections.singletonMap(key + "-replica", dataSource)));
+        setReplicas(replicas);
+    }
+
+    public Map<Object, ReplicaGroup> getReplicaGroups() {
+        return Collections.unmodifiableMap(replicaGroups);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        ActiveJdbcProperties.Replicas config = ActiveJdbcProperties.current().getReplicas();
+        if (!replicaGroups.isEmpty() && config.getHealthCheckInterval() > 0) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("activejdbc-replica-check-");
+            threadFactory.setDaemon(true);
+            healthCheck = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            healthCheck.scheduleWithFixedDelay(() -> replicaGroups.values().forEach(group -> {
+                try {
+                    group.check(config.getValidationTimeout(), config.getEvictionTime());
+                } catch (Exception e) {
+                    log.warn("replica health check failed: {}", e.getMessage());
+                }
+            }), config.getHealthCheckInterval(), config.getHealthCheckInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (healthCheck != null) {
+            healthCheck.shutdownNow();
+        }
+    }
 
     @Override
     protected Object determineCurrentLookupKey() {
-        log.info("data source switch to > {}", ApplicationContextHelper.getDataSourceKey());
         return ApplicationContextHelper.getDataSourceKey();
     }
 
+    @Override
+    protected DataSource determineTargetDataSource() {
+        Replica replica = chooseReplica();
+        if (replica != null) {
+            routed(determineCurrentLookupKey(), replica);
+            return replica;
+        }
+        return primary();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = chooseReplica();
+        if (replica != null) {
+            try {
+                Connection connection = replica.getConnection();
+                routed(determineCurrentLookupKey(), replica);
+                return connection;
+            } catch (SQLException e) {
+                evict(replica, e);
+            }
+        }
+        return primary().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Replica replica = chooseReplica();
+        if (replica != null) {
+            try {
+                Connection connection = replica.getConnection(username, password);
+                routed(determineCurrentLookupKey(), replica);
+                return connection;
+            } catch (SQLException e) {
+                evict(replica, e);
+            }
+        }
+        return primary().getConnection(username, password);
+    }
+
+    /**
+     * 只读且不在事务中时选择从库
+     */
+    private Replica chooseReplica() {
+        if (replicaGroups.isEmpty() || !ApplicationContextHelper.isReadOnly() || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return null;
+        }
+        ReplicaGroup group = replicaGroups.get(determineCurrentLookupKey());
+        return group != null ? group.choose() : null;
+    }
+
+    /**
+     * 当前数据源key的主库
+     */
+    private DataSource primary() {
+        DataSource primary = super.determineTargetDataSource();
+        routed(determineCurrentLookupKey(), null);
+        return primary;
+    }
+
+    /**
+     * 记录路由结果: 在确定实际使用的目标后按数据源与目标计数一次, 并按采样输出debug日志
+     */
+    private void routed(Object key, Replica replica) {
+        Counter counter = replica != null ? replicaCounters.get(replica) : primaryCounters.get(key);
+        if (counter == null) {
+            counter = replica != null ? replicaCounters.computeIfAbsent(replica, target -> counter(key, target.getName()))
+                    : primaryCounters.computeIfAbsent(key, target -> counter(target, "primary"));
+        }
+        counter.increment();
+        if (log.isDebugEnabled() && (routes.incrementAndGet() & (ROUTE_LOG_SAMPLE - 1)) == 0) {
+            log.debug("data source route sample > {} : {} ({} routes)", key, replica != null ? replica.getName() : "primary", routes.get());
+        }
+    }
+
+    private static Counter counter(Object key, String target) {
+        return Counter.builder("activejdbc.datasource.routes").tag("key", String.valueOf(key)).tag("target", target)
+                      .description("connection lookups routed to each data source").register(Metrics.globalRegistry);
+    }
+
+    private void evict(Replica replica, SQLException e) {
+        long evictionTime = ActiveJdbcProperties.current().getReplicas().getEvictionTime();
+        log.warn("replica {} is unavailable, evicted for {} ms, fall back to primary: {}", replica.getName(), evictionTime, e.getMessage());
+        replica.evict(evictionTime);
+    }
+
 }
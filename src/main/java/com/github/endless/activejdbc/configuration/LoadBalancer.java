@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.configuration;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 从库负载均衡策略
+ *
+ * @author Endless
+ */
+public interface LoadBalancer {
+
+	/**
+	 * 从可用的从库中选择一个
+	 *
+	 * @param candidates 可用从库 不为空
+	 */
+	Replica choose(List<Replica> candidates);
+
+	static LoadBalancer of(Strategy strategy) {
+		switch (strategy) {
+			case LEAST_ACTIVE:
+				return new LeastActive();
+			case LATENCY_WEIGHTED:
+				return new LatencyWeighted();
+			default:
+				return new RoundRobin();
+		}
+	}
+
+	enum Strategy {
+		ROUND_ROBIN, LEAST_ACTIVE, LATENCY_WEIGHTED
+	}
+
+	/**
+	 * 轮询
+	 */
+	class RoundRobin implements LoadBalancer {
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Replica choose(List<Replica> candidates) {
+			return candidates.get(Math.floorMod(counter.getAndIncrement(), candidates.size()));
+		}
+	}
+
+	/**
+	 * 活跃链接最少 相同时从随机位置开始, 避免总是选中第一个
+	 */
+	class LeastActive implements LoadBalancer {
+
+		@Override
+		public Replica choose(List<Replica> candidates) {
+			int size = candidates.size();
+			int start = size > 1 ? ThreadLocalRandom.current().nextInt(size) : 0;
+			Replica result = null;
+			for (int i = 0; i < size; i++) {
+				Replica replica = candidates.get((start + i) % size);
+				if (result == null || replica.getActive() < result.getActive()) {
+					result = replica;
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * 按延迟加权随机 权重与获取链接、健康检查的平均耗时成反比
+	 */
+	class LatencyWeighted implements LoadBalancer {
+
+		@Override
+		public Replica choose(List<Replica> candidates) {
+			int size = candidates.size();
+			if (size == 1) {
+				return candidates.get(0);
+			}
+			double total = 0;
+			for (int i = 0; i < size; i++) {
+				total += weight(candidates.get(i));
+			}
+			double random = ThreadLocalRandom.current().nextDouble(total);
+			for (int i = 0; i < size; i++) {
+				random -= weight(candidates.get(i));
+				if (random < 0) {
+					return candidates.get(i);
+				}
+			}
+			return candidates.get(size - 1);
+		}
+
+		private static double weight(Replica replica) {
+			return 1.0 / (1 + replica.getLatencyMicros());
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.configuration;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 从库 记录活跃链接数与平均延迟, 不可用时在一段时间内被剔除
+ *
+ * @author Endless
+ */
+public class Replica extends DelegatingDataSource {
+
+	/**
+	 * 平均延迟的平滑系数
+	 */
+	private static final double ALPHA = 0.2;
+
+	private final String name;
+	private final AtomicInteger active = new AtomicInteger();
+	private volatile long latencyMicros;
+	private volatile long evictedUntil;
+
+	public Replica(String name, DataSource dataSource) {
+		super(dataSource);
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getActive() {
+		return active.get();
+	}
+
+	public long getLatencyMicros() {
+		return latencyMicros;
+	}
+
+	public boolean isAvailable(long now) {
+		return evictedUntil <= now;
+	}
+
+	/**
+	 * 剔除 在 millis 毫秒内不再被选中, 健康检查通过后提前恢复
+	 */
+	public void evict(long millis) {
+		evictedUntil = System.currentTimeMillis() + millis;
+	}
+
+	public void restore() {
+		evictedUntil = 0;
+	}
+
+	void recordLatency(long nanos) {
+		long micros = nanos / 1000;
+		long previous = latencyMicros;
+		latencyMicros = previous == 0 ? micros : (long) (previous * (1 - ALPHA) + micros * ALPHA);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		long start = System.nanoTime();
+		Connection connection = super.getConnection();
+		recordLatency(System.nanoTime() - start);
+		return track(connection);
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		long start = System.nanoTime();
+		Connection connection = super.getConnection(username, password);
+		recordLatency(System.nanoTime() - start);
+		return track(connection);
+	}
+
+	/**
+	 * 链接关闭时活跃数减一
+	 */
+	private Connection track(Connection connection) {
+		active.incrementAndGet();
+		AtomicBoolean closed = new AtomicBoolean();
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+			if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+				active.decrementAndGet();
+			}
+			try {
+				return method.invoke(connection, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		});
+	}
+
+	@Override
+	public String toString() {
+		return "Replica [name=" + name + ", active=" + active + ", latencyMicros=" + latencyMicros + ", available=" + isAvailable(System.currentTimeMillis()) + "]";
+	}
+}
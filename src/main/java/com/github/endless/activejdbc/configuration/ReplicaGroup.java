@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.configuration;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一个逻辑数据源的从库组 主库仍由 {@link DynamicRoutingDataSource} 的 targetDataSources 提供
+ *
+ * @author Endless
+ */
+@Log4j2
+public class ReplicaGroup {
+
+	private final List<Replica> replicas;
+	private final LoadBalancer loadBalancer;
+
+	public ReplicaGroup(List<Replica> replicas, LoadBalancer loadBalancer) {
+		this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+		this.loadBalancer = loadBalancer;
+	}
+
+	public List<Replica> getReplicas() {
+		return replicas;
+	}
+
+	/**
+	 * 选择一个可用从库 全部被剔除时返回null, 由主库处理
+	 */
+	public Replica choose() {
+		long now = System.currentTimeMillis();
+		List<Replica> candidates = replicas;
+		for (int i = 0; i < replicas.size(); i++) {
+			if (!replicas.get(i).isAvailable(now)) {
+				candidates = available(now);
+				break;
+			}
+		}
+		return candidates.isEmpty() ? null : loadBalancer.choose(candidates);
+	}
+
+	private List<Replica> available(long now) {
+		List<Replica> available = new ArrayList<>(replicas.size());
+		for (Replica replica : replicas) {
+			if (replica.isAvailable(now)) {
+				available.add(replica);
+			}
+		}
+		return available;
+	}
+
+	/**
+	 * 健康检查 链接无效时剔除, 恢复后重新加入
+	 */
+	public void check(int validationTimeout, long evictionTime) {
+		for (Replica replica : replicas) {
+			long start = System.nanoTime();
+			boolean valid;
+			try (Connection connection = replica.getTargetDataSource().getConnection()) {
+				valid = connection.isValid(validationTimeout);
+			} catch (Exception e) {
+				valid = false;
+			}
+			if (valid) {
+				replica.recordLatency(System.nanoTime() - start);
+				if (!replica.isAvailable(System.currentTimeMillis())) {
+					log.info("replica {} is healthy again", replica.getName());
+				}
+				replica.restore();
+			} else {
+				log.warn("replica {} failed health check, evicted for {} ms", replica.getName(), evictionTime);
+				replica.evict(evictionTime);
+			}
+		}
+	}
+}
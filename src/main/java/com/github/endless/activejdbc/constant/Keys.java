@@ -108,6 +108,26 @@ public class Keys {
      * 分页查询-排序方式多个以逗号隔开 与sort对应
      */
     public final static String SQL_PAGE_ODER = "order";
+    /**
+     * 分页查询-游标 传入时使用游标分页, 首页传空值
+     */
+    public final static String SQL_PAGE_CURSOR = "cursor";
+    /**
+     * 分页查询-总数统计方式 exact/none/estimated/capped
+     */
+    public final static String SQL_PAGE_COUNT = "countStrategy";
+    /**
+     * 分页查询-capped 方式统计总数的上限
+     */
+    public final static String SQL_PAGE_COUNT_LIMIT = "countLimit";
+    /**
+     * 流式导出-格式 ndjson/csv
+     */
+    public final static String EXPORT_FORMAT = "format";
+    /**
+     * 查询-返回字段 多个以逗号隔开, 不传返回全部字段
+     */
+    public final static String SQL_SELECT_FIELDS = "fields";
     /**
      * 条件生成-版本号
      */
@@ -189,6 +209,10 @@ public class Keys {
      */
     public static final String FILED_NOT_BETWEEN = "%s not between ? and ?";
     public static final String MSG_CLASS_NAME = "com.github.model.{0}";
+    /**
+     * 构建时生成的model索引 表名=类名
+     */
+    public static final String GENERATED_MODELS_RESOURCE = "META-INF/activejdbc-generated-models.properties";
     /**
      * 打开事务
      */
@@ -233,6 +257,10 @@ public class Keys {
      * 参数解析失败
      */
     public static final String LOG_MSG_FAILED_TO_PARAMETER_RESOLVE = "参数解析异常";
+    /**
+     * 返回字段不存在
+     */
+    public static final String LOG_MSG_UNKNOWN_FIELD = "返回字段不存在 : ";
 
     /**
      * 参数类型错误-必须是1<元素个数<=1000 的集合
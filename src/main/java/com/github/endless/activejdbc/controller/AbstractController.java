@@ -30,6 +30,8 @@ import io.swagger.annotations.ApiOperation;
 import org.javalite.activejdbc.Model;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.lang.reflect.ParameterizedType;
 import java.util.List;
 import java.util.Map;
@@ -72,10 +74,11 @@ public abstract class AbstractController<T extends Model, V extends BaseModelVO>
 
     @ApiOperation("根据ID数组批量删除")
     @ApiImplicitParams({
-            @ApiImplicitParam(name = "id", value = "对应主键id", required = true, allowMultiple = true, dataType = "Long", paramType = "query")})
+            @ApiImplicitParam(name = "id", value = "对应主键id", required = true, allowMultiple = true, dataType = "Long", paramType = "query"),
+            @ApiImplicitParam(name = "hard", defaultValue = "false", value = "是否物理删除,不填默认为false即标记删除", dataType = "boolean", paramType = "query")})
     @RequestMapping(value = "/array", method = RequestMethod.DELETE)
-    public Response<List<Model>> deleteTagByArray(@RequestParam(name = "id") Long[] id) {
-        return Response.respone(ContextHelper.deleteTagById(modelClass(), id));
+    public Response<List<Object>> deleteTagByArray(@RequestParam(name = "id") Long[] id, boolean hard) {
+        return Response.respone(hard ? ContextHelper.deleteById(modelClass(), id) : ContextHelper.deleteTagById(modelClass(), id));
     }
 
     @ApiOperation("编辑 根据主键覆盖剩余字段")
@@ -89,6 +92,10 @@ public abstract class AbstractController<T extends Model, V extends BaseModelVO>
             @ApiImplicitParam(name = "pageNum", defaultValue = "1", value = "分页参数-当前页码", dataType = "int", paramType = "query"),
             @ApiImplicitParam(name = "sort", value = "分页参数-排序字段名，对应表结构必须包含该字段，多个以英文逗号隔开", dataType = "String", paramType = "query"),
             @ApiImplicitParam(name = "order", value = "分页参数-排序方式，与排序字段对应，多个以英文逗号隔开", dataType = "String", paramType = "query"),
+            @ApiImplicitParam(name = "cursor", value = "游标分页-传入上一页返回的cursor，第一页传空值，按一个排序字段与主键定位，不传则按页码分页", dataType = "String", paramType = "query"),
+            @ApiImplicitParam(name = "countStrategy", defaultValue = "exact", value = "分页参数-总数统计方式，exact:精确 none:不统计 estimated:估算 capped:最多统计到countLimit条", dataType = "String", paramType = "query"),
+            @ApiImplicitParam(name = "countLimit", defaultValue = "10000", value = "分页参数-capped方式的统计上限", dataType = "long", paramType = "query"),
+            @ApiImplicitParam(name = "fields", value = "返回字段名，对应表结构必须包含该字段，多个以英文逗号隔开，不填返回全部字段", dataType = "String", paramType = "query"),
             @ApiImplicitParam(name = "isEqual", defaultValue = "false", value = "是否全等匹配,不填默认为false(true/false)", dataType = "boolean", paramType = "query"),
             @ApiImplicitParam(name = "isOr", defaultValue = "false", value = "是否使用或运算,多个查询条件以or连接,不填默认为false(true:or,false:and)", dataType = "boolean", paramType = "query"),
             @ApiImplicitParam(name = "input", value = "参数，此处应为键值对，name取对应表字段名", dataType = "String", paramType = "query")})
@@ -98,6 +105,20 @@ public abstract class AbstractController<T extends Model, V extends BaseModelVO>
         return Response.respone(ContextHelper.pageQuery(modelClass(), input, isEqual));
     }
 
+    @ApiImplicitParams({
+            @ApiImplicitParam(name = "format", defaultValue = "ndjson", value = "导出格式 ndjson/csv", dataType = "String", paramType = "query"),
+            @ApiImplicitParam(name = "sort", value = "排序字段名，对应表结构必须包含该字段，多个以英文逗号隔开", dataType = "String", paramType = "query"),
+            @ApiImplicitParam(name = "order", value = "排序方式，与排序字段对应，多个以英文逗号隔开", dataType = "String", paramType = "query"),
+            @ApiImplicitParam(name = "fields", value = "返回字段名，对应表结构必须包含该字段，多个以英文逗号隔开，不填返回全部字段", dataType = "String", paramType = "query"),
+            @ApiImplicitParam(name = "isEqual", defaultValue = "false", value = "是否全等匹配,不填默认为false(true/false)", dataType = "boolean", paramType = "query"),
+            @ApiImplicitParam(name = "input", value = "参数，此处应为键值对，name取对应表字段名", dataType = "String", paramType = "query")})
+    @ApiOperation("流式导出 逐行写出全部符合条件的数据")
+    @RequestMapping(value = "/export", method = RequestMethod.GET)
+    public void export(@RequestParam Map<String, Object> input, boolean isEqual, HttpServletResponse response) throws IOException {
+        ContextHelper.export(modelClass(), input, isEqual, response);
+    }
+
+    @EnableModel(access = EnableModel.Access.READ_ONLY)
     @ApiOperation("高级筛选")
     @RequestMapping(value = "/filter", method = RequestMethod.POST)
     public Response<PageQuery<Map<String, Object>>> query(@RequestBody QueryFilter<V> queryFilter) {
@@ -106,18 +127,20 @@ public abstract class AbstractController<T extends Model, V extends BaseModelVO>
 
     @ApiOperation("根据id加载一条")
     @ApiImplicitParams({
-            @ApiImplicitParam(name = "id", value = "对应主键id", required = true, dataType = "Long", paramType = "path")})
+            @ApiImplicitParam(name = "id", value = "对应主键id", required = true, dataType = "Long", paramType = "path"),
+            @ApiImplicitParam(name = "fields", value = "返回字段名，对应表结构必须包含该字段，多个以英文逗号隔开，不填返回全部字段", dataType = "String", paramType = "query")})
     @RequestMapping(value = "/{id}", method = RequestMethod.GET)
-    public Response<V> findById(@PathVariable(name = "id") Long id) {
-        return Response.respone(ContextHelper.findById(modelClass(), id));
+    public Response<V> findById(@PathVariable(name = "id") Long id, @RequestParam(name = "fields", required = false) String fields) {
+        return Response.respone(ContextHelper.findById(modelClass(), id, ContextHelper.fields(modelClass(), fields)));
     }
 
     @ApiOperation("根据id加载一条,并加载所有子表数据")
     @ApiImplicitParams({
-            @ApiImplicitParam(name = "id", value = "对应主键id", required = true, dataType = "Long", paramType = "path")})
+            @ApiImplicitParam(name = "id", value = "对应主键id", required = true, dataType = "Long", paramType = "path"),
+            @ApiImplicitParam(name = "fields", value = "主表返回字段名，对应表结构必须包含该字段，多个以英文逗号隔开，不填返回全部字段", dataType = "String", paramType = "query")})
     @RequestMapping(value = "/{id}/includeAll", method = RequestMethod.GET)
-    public Response<Map<String, Object>> includeAll(@PathVariable(name = "id") Long id) {
-        return Response.respone(ContextHelper.includeAllChildren(ContextHelper.findById(modelClass(), id)).toMap());
+    public Response<Map<String, Object>> includeAll(@PathVariable(name = "id") Long id, @RequestParam(name = "fields", required = false) String fields) {
+        return Response.respone(ContextHelper.includeAllChildren(ContextHelper.findById(modelClass(), id, ContextHelper.fields(modelClass(), fields))).toMap());
     }
 
 }
@@ -60,7 +60,7 @@ public abstract class AbstractManager<T extends Model, V extends BaseModelVO> {
         return Response.respone(ContextHelper.batchCreateOrUpdateForVO(modelClass(), rows));
     }
 
-    public Response<List<Model>> deleteTagByArray(@RequestParam(name = "id") Long[] id) {
+    public Response<List<Object>> deleteTagByArray(@RequestParam(name = "id") Long[] id) {
         return Response.respone(ContextHelper.deleteTagById(modelClass(), id));
     }
 
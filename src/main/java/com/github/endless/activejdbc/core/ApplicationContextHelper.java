@@ -34,10 +34,11 @@ import org.springframework.web.context.request.ServletRequestAttributes;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 
 /**
@@ -49,7 +50,11 @@ import java.util.function.Function;
 @Order
 public class ApplicationContextHelper implements ApplicationContextAware {
 	private static final ThreadLocal<Object> contextDataSource = ThreadLocal.withInitial(() -> ModelType.MASTER);
-	public static List<Object> dataSourceKeys = new ArrayList<>();
+	private static final ThreadLocal<Boolean> contextReadOnly = ThreadLocal.withInitial(() -> Boolean.FALSE);
+	/**
+	 * 已注册的数据源key 不可变集合, 注册时整体替换, 读取无需加锁
+	 */
+	private static volatile Set<Object> dataSourceKeys = Collections.emptySet();
 	private static ApplicationContext applicationContext = null;
 
 	/**
@@ -63,6 +68,9 @@ public class ApplicationContextHelper implements ApplicationContextAware {
 	 * 切换数据源 master/slave
 	 */
 	public static void setDataSourceKey(String key) {
+		if (key.equals(contextDataSource.get())) {
+			return;
+		}
 		if (dataSourceKeys.contains(key)) {
 			contextDataSource.set(key);
 		} else {
@@ -74,6 +82,17 @@ public class ApplicationContextHelper implements ApplicationContextAware {
 		contextDataSource.remove();
 	}
 
+	/**
+	 * 当前线程是否处于只读模式 只读时数据源可路由到从库
+	 */
+	public static boolean isReadOnly() {
+		return contextReadOnly.get();
+	}
+
+	public static void setReadOnly(boolean readOnly) {
+		contextReadOnly.set(readOnly);
+	}
+
 	/**
 	 * 数据源是否存在
 	 */
@@ -81,6 +100,24 @@ public class ApplicationContextHelper implements ApplicationContextAware {
 		return dataSourceKeys.contains(key);
 	}
 
+	/**
+	 * 注册数据源key
+	 */
+	public static synchronized void addDataSourceKey(Object key) {
+		if (!dataSourceKeys.contains(key)) {
+			Set<Object> keys = new LinkedHashSet<>(dataSourceKeys);
+			keys.add(key);
+			dataSourceKeys = Collections.unmodifiableSet(keys);
+		}
+	}
+
+	/**
+	 * 已注册的数据源key
+	 */
+	public static Set<Object> getDataSourceKeys() {
+		return dataSourceKeys;
+	}
+
 	/**
 	 * 发布一个事件
 	 */
@@ -0,0 +1,599 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.github.endless.activejdbc.configuration.ActiveJdbcProperties;
+import com.github.endless.activejdbc.configuration.BizException;
+import com.github.endless.activejdbc.constant.Keys;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.javalite.activejdbc.*;
+import org.springframework.util.StringUtils;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量写入<br>
+ * {@link #createOrUpdate} 按主键是否为空拆分为新增与更新, 字段相同的行使用同一条带参数的语句以JDBC批次执行, 新增时批量取回自增主键<br>
+ * 审计字段、删除标记、created_at/updated_at 与乐观锁版本号的处理与逐条 saveIt 一致;
+ * model声明了生命周期回调时退回逐条保存, 以保证回调被调用<br>
+ * {@link #upsert} 按数据库生成 upsert 语句, 支持 MySQL/MariaDB、PostgreSQL 与 H2, 其它数据库在调用方的事务中先查询已存在的主键再分别更新与新增<br>
+ * {@link #delete} 按主键分批以 IN 语句标记删除或物理删除, 由 RETURNING 或事务中锁定的查询得出实际删除的主键, 批量回调见 {@link BulkCallback}
+ *
+ * @author Endless
+ */
+@Slf4j
+public final class BatchWriter {
+
+	private static final String CREATED_AT = "created_at";
+	private static final String UPDATED_AT = "updated_at";
+
+	private BatchWriter() {
+	}
+
+	/**
+	 * 在当前线程的链接上批量新增或更新, 返回的model与输入顺序一致
+	 */
+	public static <T extends Model> List<T> createOrUpdate(Class<T> modelClass, Collection<Map> rows) {
+		if (Callbacks.declared(modelClass)) {
+			List<T> models = new ArrayList<>(rows.size());
+			for (Map row : rows) {
+				models.add(ContextHelper.createItOrUpdate(modelClass, row));
+			}
+			return models;
+		}
+		MetaModel metaModel = ModelDelegate.metaModelOf(modelClass);
+		String idName = metaModel.getIdName();
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		List<T> models = new ArrayList<>(rows.size());
+		List<T> inserts = new ArrayList<>();
+		List<T> updates = new ArrayList<>();
+		// 输入中的字段 fromMap 不会把值为null的字段记为已修改
+		Map<Model, Collection<?>> inputs = new IdentityHashMap<>();
+		for (Map row : rows) {
+			boolean isNew = StringUtils.isEmpty(row.get(idName));
+			T model = ModelDelegate.create(modelClass).fromMap(row);
+			model.manageTime(false);
+			inputs.put(model, row.keySet());
+			if (isNew && model.getId() != null) {
+				model.setId(null);
+			}
+			ContextHelper.audit(model);
+			if (isNew && metaModel.getColumnMetadata().containsKey(CREATED_AT) && model.get(CREATED_AT) == null) {
+				model.set(CREATED_AT, now);
+			}
+			if (metaModel.getColumnMetadata().containsKey(UPDATED_AT)) {
+				model.set(UPDATED_AT, now);
+			}
+			if (!model.isValid()) {
+				throw new BizException(Keys.LOG_MSG_FAILED_TO_SAVEIT + model.errors());
+			}
+			models.add(model);
+			(isNew ? inserts : updates).add(model);
+		}
+		int batchSize = Math.max(1, ActiveJdbcProperties.current().getBatch().getSize());
+		Connection connection = new DB(metaModel.getDbName()).connection();
+		try {
+			insert(connection, metaModel, inserts, inputs, batchSize);
+			update(connection, metaModel, updates, inputs, batchSize);
+		} catch (SQLException e) {
+			throw new BizException(Keys.LOG_MSG_FAILED_TO_SAVEIT + e.getMessage(), e);
+		}
+		if (!models.isEmpty()) {
+			CountCache.invalidateOnCommit(metaModel.getTableName());
+		}
+		log.debug("batch saved {} : {} inserted, {} updated", metaModel.getTableName(), inserts.size(), updates.size());
+		return models;
+	}
+
+	/**
+	 * 以带参数的 upsert 语句批量写入, 主键冲突时更新model中值不为null的字段; 需要写入null时使用 {@link #createOrUpdate}
+	 *
+	 * @param connection 执行写入的链接
+	 * @return 驱动返回的影响行数之和
+	 */
+	public static <T extends Model> int upsert(Connection connection, List<T> models) {
+		if (models.isEmpty()) {
+			return 0;
+		}
+		MetaModel metaModel = ModelDelegate.metaModelOf(models.get(0).getClass());
+		Upsert dialect = Upsert.of(metaModel.getDbType());
+		String table = metaModel.getTableName();
+		String idName = metaModel.getIdName().toLowerCase(Locale.ROOT);
+		int batchSize = Math.max(1, ActiveJdbcProperties.current().getBatch().getSize());
+		Timer timer = Metrics.timer("activejdbc.batch.upsert", "table", table.toLowerCase(Locale.ROOT));
+		int affected = 0;
+		try {
+			for (Map.Entry<List<String>, List<T>> group : group(models, Collections.emptySet(), Collections.emptyMap()).entrySet()) {
+				List<String> columns = group.getKey();
+				// 未设置主键的行直接新增; 不支持 upsert 语句的数据库为null, 逐批合并
+				String sql = !columns.contains(idName) ? insert(table, columns) : dialect == null ? null : dialect.sql(table, idName, columns);
+				Partition<T> chunks = new Partition<>(group.getValue(), batchSize);
+				for (int i = 0; i < chunks.size(); i++) {
+					List<T> chunk = chunks.get(i);
+					long start = System.nanoTime();
+					if (sql == null) {
+						affected += merge(connection, table, idName, columns, chunk);
+					} else {
+						affected += execute(connection, sql, columns, chunk);
+					}
+					long nanos = System.nanoTime() - start;
+					timer.record(nanos, TimeUnit.NANOSECONDS);
+					if (log.isDebugEnabled()) {
+						log.debug("upsert {} batch {}/{} : {} rows in {} ms, {} rows/s", table, i + 1, chunks.size(), chunk.size(),
+								TimeUnit.NANOSECONDS.toMillis(nanos), chunk.size() * 1_000_000_000L / Math.max(1, nanos));
+					}
+				}
+			}
+		} catch (SQLException e) {
+			throw new BizException(Keys.LOG_MSG_FAILED_TO_SAVEIT + e.getMessage(), e);
+		}
+		CountCache.invalidateOnCommit(table);
+		return affected;
+	}
+
+	private static <T extends Model> int execute(Connection connection, String sql, List<String> columns, List<T> chunk) throws SQLException {
+		int affected = 0;
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			for (T model : chunk) {
+				bind(statement, 1, model, columns);
+				statement.addBatch();
+			}
+			for (int count : statement.executeBatch()) {
+				affected += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, count);
+			}
+		}
+		return affected;
+	}
+
+	/**
+	 * 不支持 upsert 语句的数据库: 查出本批已存在的主键, 已存在的行更新其余新增, 与调用方处于同一事务
+	 */
+	private static <T extends Model> int merge(Connection connection, String table, String idName, List<String> columns, List<T> chunk) throws SQLException {
+		Set<String> existing = new HashSet<>();
+		String select = "SELECT " + idName + " FROM " + table + " WHERE " + idName + " IN (" + placeholders(chunk.size()) + ")";
+		try (PreparedStatement statement = connection.prepareStatement(select)) {
+			for (int i = 0; i < chunk.size(); i++) {
+				statement.setObject(i + 1, chunk.get(i).getId());
+			}
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					existing.add(idKey(rs.getObject(1)));
+				}
+			}
+		}
+		List<T> updates = new ArrayList<>();
+		List<T> inserts = new ArrayList<>();
+		for (T model : chunk) {
+			(existing.contains(idKey(model.getId())) ? updates : inserts).add(model);
+		}
+		int affected = inserts.isEmpty() ? 0 : execute(connection, insert(table, columns), columns, inserts);
+		List<String> values = new ArrayList<>(columns);
+		values.remove(idName);
+		if (values.isEmpty()) {
+			return affected;
+		}
+		StringBuilder update = new StringBuilder("UPDATE ").append(table).append(" SET ");
+		for (int i = 0; i < values.size(); i++) {
+			update.append(i > 0 ? ", " : "").append(values.get(i)).append(" = ?");
+		}
+		update.append(" WHERE ").append(idName).append(" = ?");
+		values.add(idName);
+		return updates.isEmpty() ? affected : affected + execute(connection, update.toString(), values, updates);
+	}
+
+	/**
+	 * 驱动返回的主键类型可能与model中的不同(如 Long 与 String)
+	 */
+	private static String idKey(Object id) {
+		return IdIndex.isIntegral(id) ? String.valueOf(IdIndex.toLong(id)) : String.valueOf(id);
+	}
+
+	private static String insert(String table, List<String> columns) {
+		return Upsert.insert("INSERT INTO ", table, columns).toString();
+	}
+
+	/**
+	 * 按主键批量删除 每批一条 IN 语句, 每批的主键个数受数据库参数个数限制, 见 {@link TreeLoader#parameterLimit}:
+	 * PostgreSQL 以 RETURNING 返回实际删除的主键; 其它数据库在同一事务中先锁定并查询将被删除的主键, 再按这些主键删除,
+	 * 不依赖驱动的批次影响行数. 链接处于自动提交时在本次删除内开启并提交事务
+	 *
+	 * @param soft true 标记删除, false 物理删除
+	 * @return 实际被删除(标记删除时为此前未删除)的主键
+	 */
+	public static List<Object> delete(Class<? extends Model> modelClass, Collection<?> ids, boolean soft) {
+		MetaModel metaModel = ModelDelegate.metaModelOf(modelClass);
+		List<Object> affected = new ArrayList<>();
+		if (ids.isEmpty() || soft && !metaModel.getColumnMetadata().containsKey(Keys.SQL_DELETE_FILED)) {
+			return affected;
+		}
+		String table = metaModel.getTableName();
+		String idName = metaModel.getIdName();
+		String version = Keys.RECORD_VERSION.toLowerCase(Locale.ROOT);
+		String dialect = metaModel.getDialect().getClass().getSimpleName();
+		boolean returning = dialect.startsWith("Postgre");
+		Collection<BulkCallback> callbacks = ApplicationContextHelper.getApplicationContext() == null ? Collections.emptyList()
+				: ApplicationContextHelper.getBeansOfType(BulkCallback.class).values();
+		List<Object> params = new ArrayList<>();
+		StringBuilder sql;
+		if (soft) {
+			sql = new StringBuilder("UPDATE ").append(table).append(" SET ").append(Keys.SQL_DELETE_FILED).append(" = ?");
+			params.add(Keys.SQL_IS_DELETE);
+			if (metaModel.getColumnMetadata().containsKey(Keys.UPDATED_BY)) {
+				sql.append(", ").append(Keys.UPDATED_BY).append(" = ?");
+				params.add(ApplicationContextHelper.loginUser());
+			}
+			if (metaModel.getColumnMetadata().containsKey(UPDATED_AT)) {
+				sql.append(", ").append(UPDATED_AT).append(" = ?");
+				params.add(new Timestamp(System.currentTimeMillis()));
+			}
+			if (metaModel.isVersioned()) {
+				sql.append(", ").append(version).append(" = COALESCE(").append(version).append(", 0) + 1");
+			}
+		} else {
+			sql = new StringBuilder("DELETE FROM ").append(table);
+		}
+		sql.append(" WHERE ").append(idName).append(" IN (");
+		String notDeleted = soft ? " AND (" + Keys.SQL_DELETE_FILED + " IS NULL OR " + Keys.SQL_DELETE_FILED + " <> " + Keys.SQL_IS_DELETE + ")" : "";
+		// SQL Server 与 SQLite 不支持 FOR UPDATE, 依靠事务本身
+		String lock = dialect.startsWith("MSSQL") || dialect.startsWith("SQLite") ? "" : " FOR UPDATE";
+		int chunkSize = Math.max(1, TreeLoader.parameterLimit(metaModel) - params.size());
+		Connection connection = new DB(metaModel.getDbName()).connection();
+		boolean local = false;
+		try {
+			local = !returning && connection.getAutoCommit();
+			if (local) {
+				connection.setAutoCommit(false);
+			}
+			for (List<Object> chunk : new Partition<>(new ArrayList<Object>(new LinkedHashSet<>(ids)), chunkSize)) {
+				for (BulkCallback callback : callbacks) {
+					callback.beforeDelete(modelClass, chunk, soft);
+				}
+				List<Object> deleted;
+				if (returning) {
+					deleted = deleteReturning(connection, sql + placeholders(chunk.size()) + ")" + notDeleted + " RETURNING " + idName, params, chunk);
+				} else {
+					String select = "SELECT " + idName + " FROM " + table + " WHERE " + idName + " IN (" + placeholders(chunk.size()) + ")" + notDeleted + lock;
+					deleted = deleteSelected(connection, select, sql.toString(), notDeleted, params, chunk);
+				}
+				if (deleted.isEmpty()) {
+					continue;
+				}
+				for (BulkCallback callback : callbacks) {
+					callback.afterDelete(modelClass, deleted, soft);
+				}
+				affected.addAll(deleted);
+			}
+			if (local) {
+				connection.commit();
+			}
+		} catch (SQLException e) {
+			throw new BizException(Keys.LOG_MSG_FAILED_TO_DELETE + e.getMessage(), e);
+		} finally {
+			if (local) {
+				endLocalTransaction(connection);
+			}
+		}
+		if (!affected.isEmpty()) {
+			CountCache.invalidateOnCommit(table);
+		}
+		log.debug("bulk {} {} : {} of {} ids affected", soft ? "soft delete" : "delete", table, affected.size(), ids.size());
+		return affected;
+	}
+
+	private static List<Object> deleteReturning(Connection connection, String sql, List<Object> params, List<Object> chunk) throws SQLException {
+		List<Object> deleted = new ArrayList<>(chunk.size());
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			List<Object> values = new ArrayList<>(params);
+			values.addAll(chunk);
+			bind(statement, values);
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					deleted.add(rs.getObject(1));
+				}
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * 先锁定并查询本批中将被删除的主键, 再以一条 IN 语句删除这些主键
+	 *
+	 * @param delete 以 "IN (" 结尾的删除语句
+	 */
+	private static List<Object> deleteSelected(Connection connection, String select, String delete, String notDeleted, List<Object> params,
+	                                           List<Object> chunk) throws SQLException {
+		List<Object> existing = new ArrayList<>(chunk.size());
+		try (PreparedStatement statement = connection.prepareStatement(select)) {
+			bind(statement, chunk);
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					existing.add(rs.getObject(1));
+				}
+			}
+		}
+		if (existing.isEmpty()) {
+			return existing;
+		}
+		try (PreparedStatement statement = connection.prepareStatement(delete + placeholders(existing.size()) + ")" + notDeleted)) {
+			List<Object> values = new ArrayList<>(params);
+			values.addAll(existing);
+			bind(statement, values);
+			int count = statement.executeUpdate();
+			if (count != existing.size()) {
+				log.warn("bulk delete affected {} rows, {} ids were selected", count, existing.size());
+			}
+		}
+		return existing;
+	}
+
+	/**
+	 * 结束删除时开启的事务 已提交时回滚不产生影响, 恢复自动提交
+	 */
+	private static void endLocalTransaction(Connection connection) {
+		try {
+			connection.rollback();
+			connection.setAutoCommit(true);
+		} catch (SQLException e) {
+			log.warn("failed to restore auto-commit: {}", e.getMessage());
+		}
+	}
+
+	private static <T extends Model> void insert(Connection connection, MetaModel metaModel, List<T> models, Map<Model, Collection<?>> inputs,
+	                                             int batchSize) throws SQLException {
+		String idName = metaModel.getIdName();
+		for (Map.Entry<List<String>, List<T>> group : group(models, Collections.singleton(idName.toLowerCase(Locale.ROOT)), inputs).entrySet()) {
+			List<String> columns = group.getKey();
+			String sql = "INSERT INTO " + metaModel.getTableName() + " (" + String.join(", ", columns) + ") VALUES (" + placeholders(columns.size()) + ")";
+			for (List<T> chunk : new Partition<>(group.getValue(), batchSize)) {
+				try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+					for (T model : chunk) {
+						bind(statement, 1, model, columns);
+						statement.addBatch();
+					}
+					statement.executeBatch();
+					try (ResultSet keys = statement.getGeneratedKeys()) {
+						int column = keyColumn(keys, idName);
+						int count = 0;
+						while (keys.next()) {
+							if (count < chunk.size()) {
+								chunk.get(count).setId(keys.getObject(column));
+							}
+							count++;
+						}
+						if (count != chunk.size()) {
+							throw new DBException("batch insert into " + metaModel.getTableName() + " returned " + count + " generated keys for " + chunk.size() + " rows");
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static <T extends Model> void update(Connection connection, MetaModel metaModel, List<T> models, Map<Model, Collection<?>> inputs,
+	                                             int batchSize) throws SQLException {
+		String version = Keys.RECORD_VERSION.toLowerCase(Locale.ROOT);
+		boolean versioned = metaModel.isVersioned();
+		List<T> locked = new ArrayList<>();
+		List<T> unlocked = new ArrayList<>();
+		for (T model : models) {
+			(versioned && model.get(version) != null ? locked : unlocked).add(model);
+		}
+		update(connection, metaModel, locked, inputs, true, batchSize);
+		update(connection, metaModel, unlocked, inputs, false, batchSize);
+	}
+
+	/**
+	 * @param locked 是否以行中的版本号作为更新条件
+	 */
+	private static <T extends Model> void update(Connection connection, MetaModel metaModel, List<T> models, Map<Model, Collection<?>> inputs,
+	                                             boolean locked, int batchSize) throws SQLException {
+		String idName = metaModel.getIdName();
+		String version = Keys.RECORD_VERSION.toLowerCase(Locale.ROOT);
+		boolean versioned = metaModel.isVersioned();
+		Set<String> excluded = new HashSet<>(Arrays.asList(idName.toLowerCase(Locale.ROOT), version));
+		for (Map.Entry<List<String>, List<T>> group : group(models, excluded, inputs).entrySet()) {
+			List<String> columns = group.getKey();
+			if (columns.isEmpty() && !versioned) {
+				continue;
+			}
+			StringBuilder sql = new StringBuilder("UPDATE ").append(metaModel.getTableName()).append(" SET ");
+			for (int i = 0; i < columns.size(); i++) {
+				sql.append(i > 0 ? ", " : "").append(columns.get(i)).append(" = ?");
+			}
+			if (versioned) {
+				sql.append(columns.isEmpty() ? "" : ", ").append(version).append(" = COALESCE(").append(version).append(", 0) + 1");
+			}
+			sql.append(" WHERE ").append(idName).append(" = ?");
+			if (locked) {
+				sql.append(" AND ").append(version).append(" = ?");
+			}
+			for (List<T> chunk : new Partition<>(group.getValue(), batchSize)) {
+				try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+					for (T model : chunk) {
+						int index = bind(statement, 1, model, columns);
+						statement.setObject(index++, model.getId());
+						if (locked) {
+							statement.setObject(index, model.get(version));
+						}
+						statement.addBatch();
+					}
+					int[] counts = statement.executeBatch();
+					for (int i = 0; i < counts.length; i++) {
+						T model = chunk.get(i);
+						if (counts[i] == 0) {
+							if (locked) {
+								throw new StaleModelException("Failed to update record for model '" + model.getClass()
+										+ "', with " + idName + " = " + model.getId() + " and " + version + " = " + model.get(version)
+										+ ". Either this record does not exist anymore, or has been updated to have another " + version + '.');
+							}
+							throw new BizException(Keys.LOG_MSG_OBJECT_NOT_EXISTS + " : " + model.getId());
+						}
+						if (locked) {
+							model.set(version, model.getLong(version) + 1);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 按已设置的字段分组 同一组使用同一条语句, 组内保持输入顺序<br>
+	 * 取model中非null的字段与输入中的字段(含值为null的字段), toMap 会丢弃值为null的字段
+	 *
+	 * @param inputs model对应的输入字段
+	 */
+	private static <T extends Model> Map<List<String>, List<T>> group(List<T> models, Set<String> excluded, Map<Model, Collection<?>> inputs) {
+		Map<List<String>, List<T>> groups = new LinkedHashMap<>();
+		for (T model : models) {
+			MetaModel metaModel = ModelDelegate.metaModelOf(model.getClass());
+			List<String> attributes = new ArrayList<>(model.toMap().keySet());
+			for (Object input : inputs.getOrDefault(model, Collections.emptyList())) {
+				attributes.add(String.valueOf(input));
+			}
+			Set<String> columns = new TreeSet<>();
+			for (String column : attributes) {
+				String name = column.toLowerCase(Locale.ROOT);
+				boolean emptyId = name.equalsIgnoreCase(metaModel.getIdName()) && model.getId() == null;
+				if (!excluded.contains(name) && !emptyId && metaModel.getColumnMetadata().containsKey(name)) {
+					columns.add(name);
+				}
+			}
+			groups.computeIfAbsent(new ArrayList<>(columns), key -> new ArrayList<>()).add(model);
+		}
+		return groups;
+	}
+
+	private static int bind(PreparedStatement statement, int index, Model model, List<String> columns) throws SQLException {
+		for (String column : columns) {
+			statement.setObject(index++, model.get(column));
+		}
+		return index;
+	}
+
+	private static void bind(PreparedStatement statement, List<Object> params) throws SQLException {
+		for (int i = 0; i < params.size(); i++) {
+			statement.setObject(i + 1, params.get(i));
+		}
+	}
+
+	/**
+	 * PostgreSQL 等返回整行时按主键列名取, 只返回自增列(如 MySQL 的 GENERATED_KEY)时取该列; ROWID 等无法作为主键时报错
+	 */
+	private static int keyColumn(ResultSet keys, String idName) throws SQLException {
+		ResultSetMetaData metaData = keys.getMetaData();
+		for (int i = 1; i <= metaData.getColumnCount(); i++) {
+			if (idName.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+				return i;
+			}
+		}
+		if (metaData.getColumnCount() == 1 && metaData.getColumnType(1) != Types.ROWID && !"ROWID".equalsIgnoreCase(metaData.getColumnLabel(1))) {
+			return 1;
+		}
+		throw new DBException("generated keys do not contain the id column " + idName + ", the driver returned " + metaData.getColumnCount() + " column(s)");
+	}
+
+	/**
+	 * 各数据库的 upsert 语句
+	 */
+	enum Upsert {
+		MYSQL {
+			@Override
+			String sql(String table, String idName, List<String> columns) {
+				StringBuilder sql = insert("INSERT INTO ", table, columns).append(" ON DUPLICATE KEY UPDATE ");
+				List<String> updates = updates(idName, columns);
+				if (updates.isEmpty()) {
+					return sql.append(idName).append(" = ").append(idName).toString();
+				}
+				for (int i = 0; i < updates.size(); i++) {
+					sql.append(i > 0 ? ", " : "").append(updates.get(i)).append(" = VALUES(").append(updates.get(i)).append(')');
+				}
+				return sql.toString();
+			}
+		},
+		POSTGRESQL {
+			@Override
+			String sql(String table, String idName, List<String> columns) {
+				StringBuilder sql = insert("INSERT INTO ", table, columns).append(" ON CONFLICT (").append(idName).append(") DO ");
+				List<String> updates = updates(idName, columns);
+				if (updates.isEmpty()) {
+					return sql.append("NOTHING").toString();
+				}
+				sql.append("UPDATE SET ");
+				for (int i = 0; i < updates.size(); i++) {
+					sql.append(i > 0 ? ", " : "").append(updates.get(i)).append(" = EXCLUDED.").append(updates.get(i));
+				}
+				return sql.toString();
+			}
+		},
+		H2 {
+			@Override
+			String sql(String table, String idName, List<String> columns) {
+				StringBuilder sql = new StringBuilder("MERGE INTO ").append(table).append(" (").append(String.join(", ", columns)).append(") KEY (")
+						.append(idName).append(") VALUES (").append(placeholders(columns.size())).append(')');
+				return sql.toString();
+			}
+		};
+
+		/**
+		 * 主键冲突时更新除主键外的全部字段
+		 */
+		abstract String sql(String table, String idName, List<String> columns);
+
+		/**
+		 * @return 不支持时返回null
+		 */
+		static Upsert of(String dbType) {
+			String type = String.valueOf(dbType).toLowerCase(Locale.ROOT);
+			if (type.contains("mysql") || type.contains("mariadb")) {
+				return MYSQL;
+			}
+			if (type.contains("postgres")) {
+				return POSTGRESQL;
+			}
+			if (type.contains("h2")) {
+				return H2;
+			}
+			return null;
+		}
+
+		private static StringBuilder insert(String prefix, String table, List<String> columns) {
+			return new StringBuilder(prefix).append(table).append(" (").append(String.join(", ", columns)).append(") VALUES (")
+					.append(placeholders(columns.size())).append(')');
+		}
+
+		private static List<String> updates(String idName, List<String> columns) {
+			List<String> updates = new ArrayList<>(columns);
+			updates.remove(idName);
+			return updates;
+		}
+	}
+
+	static String placeholders(int count) {
+		StringBuilder builder = new StringBuilder(count * 3);
+		for (int i = 0; i < count; i++) {
+			builder.append(i > 0 ? ", ?" : "?");
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import org.javalite.activejdbc.Model;
+
+import java.util.List;
+
+/**
+ * 批量操作回调<br>
+ * 按主键批量删除不再逐条实例化model, model的 beforeDelete/afterSave 等回调不会被调用;
+ * 需要感知批量删除时注册实现此接口的bean, 每个分批执行前后各调用一次
+ *
+ * @author Endless
+ */
+public interface BulkCallback {
+
+	/**
+	 * @param ids  本批请求删除的主键, 不存在或已标记删除的不会被删除
+	 * @param soft true 为标记删除, false 为物理删除
+	 */
+	default void beforeDelete(Class<? extends Model> modelClass, List<Object> ids, boolean soft) {
+	}
+
+	/**
+	 * @param ids 本批实际被删除的主键
+	 */
+	default void afterDelete(Class<? extends Model> modelClass, List<Object> ids, boolean soft) {
+	}
+}
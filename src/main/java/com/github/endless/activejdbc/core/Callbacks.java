@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import org.javalite.activejdbc.Model;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 判断model是否覆盖了activejdbc的生命周期回调<br>
+ * 批量写入、批量删除等绕过 Model 实例方法的路径只在没有回调时使用, 有回调时仍逐条执行以保证回调被调用
+ *
+ * @author Endless
+ */
+final class Callbacks {
+
+	private static final Set<String> NAMES = new HashSet<>(Arrays.asList("beforeSave", "afterSave", "beforeCreate", "afterCreate", "beforeUpdate",
+			"afterUpdate", "beforeDelete", "afterDelete", "beforeValidation", "afterValidation", "afterLoad"));
+	/**
+	 * 以 ClassValue 挂在model类上, 不持有类的强引用, 旧generation的model类可被卸载
+	 */
+	private static final ClassValue<Boolean> DECLARED = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return scan(type);
+		}
+	};
+
+	private Callbacks() {
+	}
+
+	/**
+	 * model或其父类(不含 {@link Model})是否声明了回调方法
+	 */
+	static boolean declared(Class<? extends Model> modelClass) {
+		return DECLARED.get(modelClass);
+	}
+
+	private static boolean scan(Class<?> modelClass) {
+		for (Class<?> type = modelClass; type != null && type != Model.class; type = type.getSuperclass()) {
+			for (Method method : type.getDeclaredMethods()) {
+				if (method.getParameterCount() == 0 && NAMES.contains(method.getName())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -22,6 +22,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.endless.activejdbc.annotation.ChildrenClass;
 import com.github.endless.activejdbc.annotation.TransferClass;
+import com.github.endless.activejdbc.configuration.ActiveJdbcProperties;
 import com.github.endless.activejdbc.configuration.BizException;
 import com.github.endless.activejdbc.constant.Keys;
 import com.github.endless.activejdbc.constant.ModelType;
@@ -38,18 +39,24 @@ import org.javalite.common.Convert;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
@@ -61,8 +68,13 @@ import java.util.stream.Stream;
 @Slf4j
 public abstract class ContextHelper {
 
-	private static final ThreadLocal<List<DB>> connections = new ThreadLocal<>();
-	private static final ThreadLocal<Map<Connection, DataSource>> connectionMap = new ThreadLocal<>();
+	/**
+	 * 当前线程打开的链接 每个线程复用同一组容器, 释放链接时清空而不是丢弃, 稳定状态下不再分配新对象
+	 */
+	private static final ThreadLocal<List<DB>> connections = ThreadLocal.withInitial(ArrayList::new);
+	private static final ThreadLocal<Map<Connection, DataSource>> connectionMap = ThreadLocal.withInitial(IdentityHashMap::new);
+	private static final ThreadLocal<Map<String, DB>> dbs = ThreadLocal.withInitial(HashMap::new);
+	private static final Map<String, DataSource> DATA_SOURCES = new ConcurrentHashMap<>();
 	private static final Map<Class<? extends Model>, ColumnMetadata> VERSION = new HashMap<>();
 
 
@@ -78,7 +90,7 @@ public abstract class ContextHelper {
 	 * 同步执行-所有数据使用相同事务
 	 */
 	public static <T extends Model> List<T> batchCreateOrUpdateForMap(Class<T> modelClass, Collection<Map> rows) {
-		return rows.stream().map(row -> createItOrUpdate(modelClass, row)).collect(Collectors.toList());
+		return BatchWriter.createOrUpdate(modelClass, rows);
 	}
 
 	/**
@@ -120,18 +132,15 @@ public abstract class ContextHelper {
 	}
 
 	/**
-	 * 根据List<Model>批量创建或更新
+	 * 根据List<Model>批量创建或更新 主键冲突时更新已设置的字段
 	 */
 	public static <T extends Model> Integer batchCreateOrUpdate(List<T> rows, ModelType modelType) {
 		if (rows == null) {
 			return 0;
 		}
 		DB db = ContextHelper.openConnection(modelType.getName());
-		Integer rowsSize = new Partition<T>(rows, 500).stream()
-		                                              .map(list -> list.stream().map(e -> e.toInsert().replace("INSERT INTO", "REPLACE INTO"))
-		                                                               .collect(Collectors.joining(";"))).filter(e -> e.length() > 0).map(db::exec)
-		                                              .mapToInt(e -> e).sum();
-		log.info("replace into total {} ", rowsSize);
+		int rowsSize = BatchWriter.upsert(db.connection(), rows);
+		log.info("upsert total {} ", rowsSize);
 		return rowsSize;
 	}
 
@@ -209,6 +218,7 @@ public abstract class ContextHelper {
 			assertNotNull(model);
 			if (ModelDelegate.attributeNames(model.getClass()).contains(Keys.SQL_DELETE_FILED)) {
 				model.set(Keys.SQL_DELETE_FILED, Keys.SQL_IS_DELETE).saveIt();
+				CountCache.invalidateOnCommit(ModelDelegate.tableNameOf(modelClass(model)));
 			}
 			return model;
 		} catch (Exception e) {
@@ -225,10 +235,37 @@ public abstract class ContextHelper {
 	}
 
 	/**
-	 * 根据ID数组删除
+	 * 根据ID数组标记删除 分批执行, model声明了回调时逐条删除
+	 *
+	 * @return 实际被删除的主键
+	 */
+	public static <T extends Model> List<Object> deleteTagById(Class<T> modelClass, Long... input) {
+		if (Callbacks.declared(modelClass)) {
+			return Arrays.stream(input).map(i -> deleteTagById(modelClass, i).getId()).collect(Collectors.toList());
+		}
+		return BatchWriter.delete(modelClass, Arrays.asList(input), true);
+	}
+
+	/**
+	 * 根据ID数组物理删除 分批执行, model声明了回调时逐条删除
+	 *
+	 * @return 实际被删除的主键
 	 */
-	public static <T extends Model> List deleteTagById(Class<T> modelClass, Long... input) {
-		return Arrays.stream(input).map(i -> deleteTagById(modelClass, i)).collect(Collectors.toList());
+	public static <T extends Model> List<Object> deleteById(Class<T> modelClass, Long... input) {
+		if (!Callbacks.declared(modelClass)) {
+			return BatchWriter.delete(modelClass, Arrays.asList(input), false);
+		}
+		List<Object> deleted = new ArrayList<>();
+		for (Long id : input) {
+			T model = ModelDelegate.findById(modelClass, id);
+			if (model != null && model.delete()) {
+				deleted.add(model.getId());
+			}
+		}
+		if (!deleted.isEmpty()) {
+			CountCache.invalidateOnCommit(ModelDelegate.tableNameOf(modelClass));
+		}
+		return deleted;
 	}
 
 	/**
@@ -277,14 +314,65 @@ public abstract class ContextHelper {
 	 * 根据ID查询
 	 */
 	public static <T extends Model> T findById(Class<T> modelClass, final Object id) {
-		return assertNotNull(ModelDelegate.findFirst(modelClass, idNameOf(modelClass) + Keys.SQL_WHERE_SINGLE_PLACEHOLDER, id));
+		return assertNotNull(ModelDelegate.findFirst(modelClass, WherePlan.idQuery(modelClass), id));
 	}
 
 	/**
-	 * 加载第一条数据
+	 * 根据ID查询 只查询指定字段
+	 *
+	 * @param columns 返回字段, 为空时查询全部字段
+	 */
+	public static <T extends Model> T findById(Class<T> modelClass, final Object id, List<String> columns) {
+		if (columns.isEmpty()) {
+			return findById(modelClass, id);
+		}
+		return assertNotNull(findFirst(modelClass, columns, WherePlan.idQuery(modelClass), id));
+	}
+
+	/**
+	 * 加载第一条数据 参数中的 fields 为返回字段
 	 */
 	public static <T extends Model> T findFirst(Class<T> modelClass, Map input) {
-		return ModelDelegate.findFirst(modelClass, query(modelClass, input, true), getParams(modelClass, input, true).toArray());
+		List<String> columns = fields(modelClass, input);
+		WherePlan plan = WherePlan.of(modelClass, input, true);
+		if (columns.isEmpty()) {
+			return ModelDelegate.findFirst(modelClass, plan.query, plan.params(input));
+		}
+		return findFirst(modelClass, columns, plan.query, plan.params(input));
+	}
+
+	private static <T extends Model> T findFirst(Class<T> modelClass, List<String> columns, String subQuery, Object... params) {
+		List<T> rows = new LazyModelList<T>(subQuery, metaModelOf(modelClass), columns, params).limit(1);
+		return rows.isEmpty() ? null : rows.get(0);
+	}
+
+	/**
+	 * 解析并移除参数中的 fields(返回字段, 多个以英文逗号隔开), 校验字段属于该表并补上主键<br>
+	 * 未传时返回空列表, 即查询全部字段
+	 */
+	public static <T extends Model> List<String> fields(Class<T> modelClass, Map input) {
+		return fields(modelClass, Convert.toString(input.remove(Keys.SQL_SELECT_FIELDS)));
+	}
+
+	/**
+	 * @param fields 返回字段 多个以英文逗号隔开
+	 * @see #fields(Class, Map)
+	 */
+	public static <T extends Model> List<String> fields(Class<T> modelClass, String fields) {
+		if (!StringUtils.hasText(fields)) {
+			return Collections.emptyList();
+		}
+		Set<String> attributeNames = ModelDelegate.attributeNames(modelClass);
+		Set<String> columns = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		columns.add(idNameOf(modelClass));
+		for (String field : fields.split(",")) {
+			String column = field.trim();
+			if (!column.isEmpty()) {
+				contextAssert(!attributeNames.contains(column), Keys.LOG_MSG_UNKNOWN_FIELD + column);
+				columns.add(column);
+			}
+		}
+		return new ArrayList<>(columns);
 	}
 
 	/**
@@ -307,7 +395,7 @@ public abstract class ContextHelper {
 	 * 根据主键获取一个关联子表的数据, 并加载这个子表的关联子表数据数据（如果有）
 	 */
 	public static <T extends Model> LazyList<Model> getChildren(T parent, Class<? extends Model> childrenClass) {
-		String subQuery = idNameOf(modelClass(parent)) + Keys.SQL_WHERE_SINGLE_PLACEHOLDER;
+		String subQuery = WherePlan.idQuery(modelClass(parent));
 		log.info("{} | {} | {} | {}", childrenClass, modelClass(parent), subQuery, parent.getLongId());
 		return ModelDelegate.where(childrenClass, subQuery, parent.getLongId()).include(getChildrenClass(childrenClass));
 	}
@@ -333,8 +421,8 @@ public abstract class ContextHelper {
 	 * 根据表的元数据过滤提交的参数
 	 */
 	public static <T extends Model> List<String> getParams(Class<T> modelClass, Map input, boolean isEqual) {
-		return filterKeys(modelClass, input).map(key -> input.get(key.toLowerCase()) + (isEqual ? Keys.EMPTY : Keys.SQL_FIELD_LIKE))
-		                                    .collect(Collectors.toList());
+		Object[] params = WherePlan.of(modelClass, input, isEqual).params(input);
+		return Arrays.asList(Arrays.copyOf(params, params.length, String[].class));
 	}
 
 	/**
@@ -348,33 +436,36 @@ public abstract class ContextHelper {
 	 * 树形加载子表数据 最多共2层 <br>
 	 */
 	public static <T extends Model> T includeAll(Class<T> modelClass, final Object id) {
-		Long count = ModelDelegate.count(modelClass, idNameOf(modelClass) + Keys.SQL_WHERE_SINGLE_PLACEHOLDER, id);
+		Long count = ModelDelegate.count(modelClass, WherePlan.idQuery(modelClass), id);
 		if (count <= 0) {
 			throw new BizException(Keys.LOG_MSG_OBJECT_NOT_EXISTS);
 		}
-		LazyList<T> model = ModelDelegate.where(modelClass, idNameOf(modelClass) + Keys.SQL_WHERE_SINGLE_PLACEHOLDER, id);
+		LazyList<T> model = ModelDelegate.where(modelClass, WherePlan.idQuery(modelClass), id);
 		return (T) model.include(getChildrenClass(modelClass)).limit(1).get(0);
 	}
 
 	/**
-	 * 树形加载子表数据 最多共3层 <br>
+	 * 树形加载子表数据 最多向下 activejdbc.include.max-depth 层 <br>
+	 * 逐层加载, 每层每个子表一条 IN 查询
 	 */
 	public static <T extends Model> T includeAll(T model) {
-		Stream.of(getChildrenClass(model)).filter(child -> ModelDelegate.belongsTo(child, modelClass(model))).forEach(childrenClass -> {
-			LazyList<Model> all = getChildren(model, childrenClass);
-			all.forEach(ContextHelper::includeAll);
-			((BaseModel) model).include(childrenClass, all);
-		});
+		TreeLoader.load(Collections.singletonList(model), ActiveJdbcProperties.current().getInclude().getMaxDepth());
 		return model;
 	}
 
 	/**
-	 * 树形加载子表数据 最多共3层 <br>
+	 * 树形加载多个model的子表数据 最多向下 activejdbc.include.max-depth 层 <br>
+	 * 查询次数与model个数无关
+	 */
+	public static <T extends Model> List<T> includeAll(List<T> models) {
+		return TreeLoader.load(models, ActiveJdbcProperties.current().getInclude().getMaxDepth());
+	}
+
+	/**
+	 * 只加载直接关联的子表数据 <br>
 	 */
 	public static <T extends Model> T includeAllChildren(T model) {
-		Stream.of(getChildrenClass(model)).filter(child -> ModelDelegate.belongsTo(child, modelClass(model))).forEach(childrenClass -> {
-			((BaseModel) model).include(childrenClass, getChildren(model, childrenClass));
-		});
+		TreeLoader.load(Collections.singletonList(model), 1);
 		return model;
 	}
 
@@ -397,6 +488,84 @@ public abstract class ContextHelper {
 		return paginator.apply(otherClass);
 	}
 
+	/**
+	 * 按条件流式导出到当前响应 格式取参数 format, 排序取 sort/order
+	 *
+	 * @param isEqual 是否全等匹配
+	 */
+	public static <T extends Model> long export(Class<T> modelClass, Map input, boolean isEqual, HttpServletResponse response) throws IOException {
+		ExportFormat format = ExportFormat.of(Convert.toString(input.remove(Keys.EXPORT_FORMAT)));
+		response.setContentType(format.getContentType());
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		response.setHeader("Content-Disposition", "attachment; filename=\"" + metaModelOf(modelClass).getTableName() + "." + format.getExtension() + "\"");
+		return export(modelClass, input, isEqual, format, response.getOutputStream());
+	}
+
+	/**
+	 * 按条件流式导出 通过只进游标逐行读取并写出, 不分页也不在内存中保留结果
+	 *
+	 * @param isEqual 是否全等匹配
+	 * @return 导出的行数
+	 */
+	public static <T extends Model> long export(Class<T> modelClass, Map input, boolean isEqual, ExportFormat format, OutputStream out) throws IOException {
+		try (RowCursor cursor = cursor(modelClass, input, isEqual)) {
+			return RowExporter.write(cursor, format, out, Math.max(1, ActiveJdbcProperties.current().getStreaming().getFetchSize()));
+		}
+	}
+
+	/**
+	 * 按条件返回逐行读取的model流, 基于只进游标, 堆内存只与 fetchSize 有关而与结果集大小无关<br>
+	 * 流持有当前线程的链接, 必须在链接释放前关闭, 建议使用 try-with-resources; 读完最后一行时自动关闭
+	 *
+	 * @param isLike 是否模糊匹配
+	 */
+	public static <T extends Model> Stream<T> stream(Class<T> modelClass, Map input, boolean... isLike) {
+		return cursor(modelClass, input, isLike.length == 0 || isLike[0]).models(metaModelOf(modelClass), modelClass);
+	}
+
+	/**
+	 * 按where条件返回逐行读取的model流
+	 *
+	 * @param subQuery where条件, 为空时不加条件
+	 * @param orderBy  排序, 可为空
+	 * @see #stream(Class, Map, boolean...)
+	 */
+	public static <T extends Model> Stream<T> stream(Class<T> modelClass, String subQuery, String orderBy, Object... params) {
+		return cursor(modelClass, subQuery, orderBy, params).models(metaModelOf(modelClass), modelClass);
+	}
+
+	/**
+	 * 按条件打开只进游标 排序取 sort/order, 返回字段取 fields
+	 *
+	 * @param isEqual 是否全等匹配
+	 */
+	public static <T extends Model> RowCursor cursor(Class<T> modelClass, Map input, boolean isEqual) {
+		String orderBy = analysis(input).getOrderBy();
+		List<String> columns = fields(modelClass, input);
+		WherePlan plan = WherePlan.of(modelClass, input, isEqual);
+		return cursor(modelClass, columns, Keys.SQL_WHERE_DEFAULT.equals(plan.query) ? null : plan.query, orderBy, plan.params(input));
+	}
+
+	/**
+	 * 按where条件打开只进游标
+	 */
+	public static <T extends Model> RowCursor cursor(Class<T> modelClass, String subQuery, String orderBy, Object... params) {
+		return cursor(modelClass, Collections.emptyList(), subQuery, orderBy, params);
+	}
+
+	/**
+	 * 按where条件打开只进游标 只查询指定字段
+	 *
+	 * @param columns 返回字段, 为空时查询全部字段
+	 */
+	public static <T extends Model> RowCursor cursor(Class<T> modelClass, List<String> columns, String subQuery, String orderBy, Object... params) {
+		MetaModel metaModel = metaModelOf(modelClass);
+		String[] select = columns.isEmpty() ? null : columns.toArray(new String[0]);
+		String sql = metaModel.getDialect().formSelect(metaModel.getTableName(), select, StringUtils.hasText(subQuery) ? subQuery : null,
+				StringUtils.hasText(orderBy) ? Collections.singletonList(orderBy.trim()) : Collections.emptyList(), -1, -1);
+		return RowCursor.open(metaModel, sql, params);
+	}
+
 
 	/**
 	 * 分页查询生成器，根据参数和modelClass生成一个分页查询器
@@ -406,11 +575,13 @@ public abstract class ContextHelper {
 	 */
 	public static <T extends Model> PaginatorBuilder queryBuilder(Class<T> modelClass, Map input, boolean isEqual) {
 		PaginatorQuery pagehelper = analysis(input);
-		input = deLayer(input);
+		List<String> columns = fields(modelClass, input);
+		WherePlan plan = WherePlan.of(modelClass, input, isEqual);
 		PaginatorBuilder<Model> paginator = Paginator.instance().countQuery(Keys.SQL_WHERE_DEFAULT).modelClass((Class<Model>) modelClass)
-		                                             .orderBy(pagehelper.getOrderBy()).pageSize(pagehelper.getPageSize())
-		                                             .currentPageIndex(pagehelper.getPageNum(), true);
-		return paginator.params(getParams(modelClass, input, isEqual).toArray()).query(query(modelClass, input, isEqual));
+		                                             .columns(columns).orderBy(pagehelper.getOrderBy()).pageSize(pagehelper.getPageSize())
+		                                             .currentPageIndex(pagehelper.getPageNum(), true).cursor(pagehelper.getCursor())
+		                                             .countStrategy(pagehelper.getCountStrategy()).countLimit(pagehelper.getCountLimit());
+		return paginator.params(plan.params(input)).query(plan.query);
 	}
 
 	/**
@@ -418,8 +589,7 @@ public abstract class ContextHelper {
 	 * @param isEqual 是否全等匹配
 	 */
 	public static <T extends Model> String query(Class<T> modelClass, Map input, boolean isEqual) {
-		String query = !isEqual ? subQuery(modelClass, input) : subQueryNotLike(modelClass, input);
-		return getParams(modelClass, input, isEqual).isEmpty() ? Keys.SQL_WHERE_DEFAULT : query;
+		return WherePlan.of(modelClass, input, isEqual).query;
 	}
 
 	/**
@@ -519,19 +689,9 @@ public abstract class ContextHelper {
 	public static <T extends Model> T saveIt(T model) {
 		try {
 			assertNotNull(model);
-			Set<String> attribute = ModelDelegate.attributeNames(modelClass(model));
-			if (attribute.contains(Keys.SQL_DELETE_FILED)) {
-				if (!Keys.SQL_IS_NOT_DEL.equals(model.getInteger(Keys.SQL_DELETE_FILED))) {
-					model.set(Keys.SQL_DELETE_FILED, Keys.SQL_IS_NOT_DEL);
-				}
-			}
-			if (model.isNew() && attribute.contains(Keys.CREATED_BY)) {
-				model.set(Keys.CREATED_BY, ApplicationContextHelper.loginUser());
-			}
-			if (!model.isNew() && attribute.contains(Keys.UPDATED_BY)) {
-				model.set(Keys.UPDATED_BY, ApplicationContextHelper.loginUser());
-			}
+			audit(model);
 			model.saveIt();
+			CountCache.invalidateOnCommit(ModelDelegate.tableNameOf(modelClass(model)));
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new BizException(Keys.LOG_MSG_FAILED_TO_SAVEIT + e.getMessage(), e);
@@ -539,13 +699,31 @@ public abstract class ContextHelper {
 		return model;
 	}
 
+	/**
+	 * 保存前填充审计字段: 重置删除标记, 新增时写入创建人, 更新时写入修改人
+	 */
+	public static <T extends Model> T audit(T model) {
+		Set<String> attribute = ModelDelegate.attributeNames(modelClass(model));
+		if (attribute.contains(Keys.SQL_DELETE_FILED)) {
+			if (!Keys.SQL_IS_NOT_DEL.equals(model.getInteger(Keys.SQL_DELETE_FILED))) {
+				model.set(Keys.SQL_DELETE_FILED, Keys.SQL_IS_NOT_DEL);
+			}
+		}
+		if (model.isNew() && attribute.contains(Keys.CREATED_BY)) {
+			model.set(Keys.CREATED_BY, ApplicationContextHelper.loginUser());
+		}
+		if (!model.isNew() && attribute.contains(Keys.UPDATED_BY)) {
+			model.set(Keys.UPDATED_BY, ApplicationContextHelper.loginUser());
+		}
+		return model;
+	}
+
 	/**
 	 * 根据表的元数据与提交的参数生成where条件<br>
 	 * 此方法返回模糊匹配的 条件语句
 	 */
 	public static <T extends Model> String subQuery(Class<T> modelClass, Map input) {
-		String delimiter = isOr(input) ? Keys.SQL_WHERE_DELIMITER_OR_LIKE : Keys.SQL_WHERE_DELIMITER_AND_LIKE;
-		return filterKeys(modelClass, input).collect(Collectors.joining(delimiter, Keys.SQL_WHERE_PREFIX, Keys.SQL_WHERE_SUFFIX_LIKE));
+		return WherePlan.of(modelClass, input, false).subQuery;
 	}
 
 	/**
@@ -553,8 +731,7 @@ public abstract class ContextHelper {
 	 * 此方法返回精确匹配的 条件语句
 	 */
 	public static <T extends Model> String subQueryNotLike(Class<T> modelClass, Map input) {
-		String delimiter = isOr(input) ? Keys.SQL_WHERE_DELIMITER_OR : Keys.SQL_WHERE_DELIMITER_AND;
-		return filterKeys(modelClass, input).collect(Collectors.joining(delimiter, Keys.SQL_WHERE_PREFIX, Keys.SQL_WHERE_SUFFIX));
+		return WherePlan.of(modelClass, input, true).subQuery;
 	}
 
 	/**
@@ -724,54 +901,128 @@ public abstract class ContextHelper {
 	 * 根据注解打开数据库链接
 	 */
 	public static DataSource getDataSource(String modelType) {
-		Map<String, DataSource> dataSources = ApplicationContextHelper.getBeansOfType(DataSource.class);
-		return dataSources.getOrDefault(modelType, ApplicationContextHelper.getBeanByType(DataSource.class));
+		DataSource dataSource = DATA_SOURCES.get(modelType);
+		if (dataSource == null) {
+			Map<String, DataSource> dataSources = ApplicationContextHelper.getBeansOfType(DataSource.class);
+			dataSource = dataSources.getOrDefault(modelType, ApplicationContextHelper.getBeanByType(DataSource.class));
+			if (dataSource != null) {
+				DATA_SOURCES.put(modelType, dataSource);
+			}
+		}
+		return dataSource;
 	}
 
 	/**
 	 * 当前所有链接开启事务
 	 */
 	public static void openTransaction() {
-		connections.get().forEach(DB::openTransaction);
-		log.info(Keys.LOG_MSG_OPEN_TRANSACTION, DB.getCurrrentConnectionNames());
+		List<DB> current = connections.get();
+		for (int i = 0; i < current.size(); i++) {
+			current.get(i).openTransaction();
+		}
+		CountCache.begin();
+		if (log.isDebugEnabled()) {
+			log.debug(Keys.LOG_MSG_OPEN_TRANSACTION, DB.getCurrrentConnectionNames());
+		}
 	}
 
 	/**
 	 * 当前所有链接提交事务
 	 */
 	public static void commitTransaction() {
-		connections.get().forEach(DB::commitTransaction);
-		log.info(Keys.LOG_MSG_COMMIT_TRANSACTION, DB.getCurrrentConnectionNames());
+		List<DB> current = connections.get();
+		for (int i = 0; i < current.size(); i++) {
+			current.get(i).commitTransaction();
+		}
+		CountCache.complete();
+		if (log.isDebugEnabled()) {
+			log.debug(Keys.LOG_MSG_COMMIT_TRANSACTION, DB.getCurrrentConnectionNames());
+		}
 	}
 
 	/**
 	 * 当前所有链接回滚事务
 	 */
 	public static void rollbackTransaction() {
-		connections.get().forEach(db -> {
+		List<DB> current = connections.get();
+		for (int i = 0; i < current.size(); i++) {
 			try {
-				db.rollbackTransaction();
+				current.get(i).rollbackTransaction();
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
-		});
+		}
+		CountCache.complete();
 		log.warn(Keys.LOG_MSG_ROLLBACK_TRANSACTION, DB.getCurrrentConnectionNames());
 	}
 
 	/**
-	 * 释放当前所有链接
+	 * 当前所有链接设置为只读 只读链接不开启事务, 保持自动提交<br>
+	 * 处于外层事务(如 @Transactional)中时链接属于该事务, 不修改
+	 */
+	public static void readOnlyConnections() {
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			return;
+		}
+		List<DB> current = connections.get();
+		for (int i = 0; i < current.size(); i++) {
+			try {
+				current.get(i).connection().setReadOnly(true);
+			} catch (SQLException e) {
+				throw new DBException(e);
+			}
+		}
+	}
+
+	/**
+	 * 释放当前所有链接 只读链接归还前恢复为读写
 	 */
 	public static void releaseConnection() {
-		if (!DB.getCurrrentConnectionNames().isEmpty()) {
-			log.info(Keys.LOG_MSG_CLOSE_TRANSACTION, DB.getCurrrentConnectionNames());
-			connections.get().stream().map(DB::detach).forEach(connection -> {
-				DataSourceUtils.releaseConnection(connection, connectionMap.get().get(connection));
-			});
+		List<DB> current = connections.get();
+		if (current.isEmpty()) {
+			return;
+		}
+		if (log.isDebugEnabled()) {
+			log.debug(Keys.LOG_MSG_CLOSE_TRANSACTION, DB.getCurrrentConnectionNames());
+		}
+		Map<Connection, DataSource> dataSources = connectionMap.get();
+		boolean readOnly = ApplicationContextHelper.isReadOnly() && !TransactionSynchronizationManager.isActualTransactionActive();
+		for (int i = 0; i < current.size(); i++) {
+			DB db = current.get(i);
+			if (db.hasConnection()) {
+				Connection connection = db.detach();
+				if (readOnly) {
+					try {
+						connection.setReadOnly(false);
+					} catch (SQLException e) {
+						log.warn("failed to reset read-only connection: {}", e.getMessage());
+					}
+				}
+				DataSourceUtils.releaseConnection(StatementCache.release(connection), dataSources.remove(connection));
+			}
 		}
+		current.clear();
 	}
 
 	public static void initConnections(String... dbName) {
-		connections.set(openConnections(dbName));
+		List<DB> current = connections.get();
+		current.clear();
+		for (String name : dbName) {
+			current.add(openConnection(name));
+		}
+	}
+
+	/**
+	 * 在当前链接之外再打开一个数据库链接, 已打开时忽略
+	 */
+	public static void addConnection(String dbName) {
+		List<DB> current = connections.get();
+		for (int i = 0; i < current.size(); i++) {
+			if (current.get(i).name().equals(dbName)) {
+				return;
+			}
+		}
+		current.add(openConnection(dbName));
 	}
 
 	/**
@@ -782,9 +1033,6 @@ public abstract class ContextHelper {
 	}
 
 	public static void connectionCache(Connection connection, DataSource dataSource) {
-		if (connectionMap.get() == null) {
-			connectionMap.set(new HashMap<>());
-		}
 		connectionMap.get().put(connection, dataSource);
 	}
 
@@ -792,14 +1040,14 @@ public abstract class ContextHelper {
 	 * 根据注解打开数据库链接
 	 */
 	public static DB openConnection(String modelType) {
-		if (DB.getCurrrentConnectionNames().contains(modelType)) {
-			return initDB(modelType);
+		DB db = dbs.get().computeIfAbsent(modelType, DB::new);
+		if (db.hasConnection()) {
+			return db;
 		}
 		DataSource dataSource = getDataSource(modelType);
 		if (dataSource != null) {
 			try {
-				Connection connection = DataSourceUtils.doGetConnection(dataSource);
-				DB db = new DB(modelType);
+				Connection connection = StatementCache.wrap(DataSourceUtils.doGetConnection(dataSource));
 				db.attach(connection);
 				connectionCache(connection, dataSource);
 				return db;
@@ -851,15 +1099,19 @@ public abstract class ContextHelper {
 	}
 
 	/**
-	 * 解析当前请求的分页信息
+	 * 解析当前请求的分页信息 不在请求中(如批处理任务)时 sort/order 取自input
 	 */
 	public static PaginatorQuery analysis(Map input) {
 		HttpServletRequest request = ApplicationContextHelper.getRequest();
 		Integer pageNum = Convert.toInteger(input.getOrDefault(Keys.SQL_PAGE_NUM, 1));
 		Integer pageSize = Convert.toInteger(input.getOrDefault(Keys.SQL_PAGE_SIZE, 10));
-		String order = request.getParameter(Keys.SQL_PAGE_ODER);
-		String sort = request.getParameter(Keys.SQL_PAGE_SORT);
-		return new PaginatorQuery().setPageNum(pageNum).setPageSize(pageSize).setOrderBy(Helper.orderBy(sort, order));
+		String order = request != null ? request.getParameter(Keys.SQL_PAGE_ODER) : Convert.toString(input.remove(Keys.SQL_PAGE_ODER));
+		String sort = request != null ? request.getParameter(Keys.SQL_PAGE_SORT) : Convert.toString(input.remove(Keys.SQL_PAGE_SORT));
+		String cursor = input.containsKey(Keys.SQL_PAGE_CURSOR) ? Convert.toString(input.remove(Keys.SQL_PAGE_CURSOR)) : null;
+		CountStrategy countStrategy = CountStrategy.of(Convert.toString(input.remove(Keys.SQL_PAGE_COUNT)));
+		Long countLimit = Convert.toLong(input.remove(Keys.SQL_PAGE_COUNT_LIMIT));
+		return new PaginatorQuery().setPageNum(pageNum).setPageSize(pageSize).setOrderBy(Helper.orderBy(sort, order))
+		                           .setCursor(cursor == null ? null : cursor.trim()).setCountStrategy(countStrategy).setCountLimit(countLimit);
 	}
 
 	/**
@@ -902,9 +1154,19 @@ public abstract class ContextHelper {
 
 	public static void refresh() {
 		ContextHelper.getField(Registry.instance(), "initedDbs", Set.class).clear();
+		MemoryCompiler.nextGeneration();
 		MemoryCompiler.invokeActive();
 	}
 
+	/**
+	 * 增量刷新表结构 只重新生成新增或变化的表, 移除已删除的表
+	 *
+	 * @see MemoryCompiler#refreshIncremental()
+	 */
+	public static SchemaChanges refreshIncremental() {
+		return MemoryCompiler.refreshIncremental();
+	}
+
 	@SneakyThrows
 	public static <T> void setField(T instance, Class<?> clazz, String fieldName, Object value) {
 		Field field = clazz.getDeclaredField(fieldName);
@@ -927,10 +1189,10 @@ public abstract class ContextHelper {
 	}
 
 	/**
-	 * 根据tableName获取modelClass
+	 * 根据tableName获取modelClass 懒加载模式下首次访问时生成并注册
 	 */
 	public static Class<Model> modelClass(String tableName) {
-		MetaModel metaModel = Registry.instance().getMetaModel(tableName);
+		MetaModel metaModel = MemoryCompiler.registerLazyTable(tableName);
 		if (metaModel == null) {
 			throw new BizException("tableName:" + tableName + "不存在,或尚未创建model");
 		}
@@ -17,14 +17,16 @@ import org.springframework.core.io.support.PropertiesLoaderUtils;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Component
 public class ContextModelInitialize implements ApplicationRunner {
-	private static final Map<String, Class<Model>> contextModels = new HashMap<>();
+	private static final Map<String, Class<Model>> contextModels = new ConcurrentHashMap<>();
 
 	public static Map<String, Class<Model>> getContextModels() {
 		return contextModels;
@@ -53,13 +55,24 @@ public class ContextModelInitialize implements ApplicationRunner {
 		initContextModels();
 		log.info("activejdbc compiler");
 		MemoryCompiler.invokeActive();
+		bindListeners(contextModels.values());
+	}
+
+	/**
+	 * 为model绑定 @CallbackListeners 与 @ValidatorListener
+	 */
+	static void bindListeners(Class<Model> modelClass) {
+		bindListeners(Collections.singletonList(modelClass));
+	}
+
+	static void bindListeners(Collection<Class<Model>> models) {
 		Map<String, Object> callbackListeners = ApplicationContextHelper.getApplicationContext().getBeansWithAnnotation(CallbackListeners.class);
 		for (Map.Entry<String, Object> callbackListener : callbackListeners.entrySet()) {
 			if (callbackListener.getValue() instanceof CallbackListener) {
 				CallbackListener callback = (CallbackListener) callbackListener.getValue();
 				CallbackListeners callbackAnnotation = AnnotationUtils.findAnnotation(callback.getClass(), CallbackListeners.class);
 				if (callbackAnnotation.tableNames().length > 0 || callbackAnnotation.value().length > 0) {
-					contextModels.values().stream().filter(e -> {
+					models.stream().filter(e -> {
 						return Arrays.asList(callbackAnnotation.tableNames())
 						             .contains(ModelDelegate.tableNameOf(e)) || Arrays.asList(callbackAnnotation.value()).contains(e);
 					}).forEach(e -> {
@@ -74,7 +87,7 @@ public class ContextModelInitialize implements ApplicationRunner {
 				Validator validator = (Validator) validatorListener.getValue();
 				ValidatorListener validatorAnnotation = AnnotationUtils.findAnnotation(validator.getClass(), ValidatorListener.class);
 				if (validatorAnnotation.tableNames().length > 0 || validatorAnnotation.value().length > 0) {
-					contextModels.values().stream().filter(e -> {
+					models.stream().filter(e -> {
 						return Arrays.asList(validatorAnnotation.tableNames())
 						             .contains(ModelDelegate.tableNameOf(e)) || Arrays.asList(validatorAnnotation.value()).contains(e);
 					}).forEach(e -> {
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.github.endless.activejdbc.configuration.ActiveJdbcProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 分页总数缓存 与 activejdbc 的 @Cached 无关, 动态model同样适用<br>
+ * 以 (表名, 规范化后的统计SQL, 参数) 为键, 容量有界按LRU淘汰, 过期时间可按表配置<br>
+ * 经 {@link ContextHelper} 写入的表会失效其全部缓存; 统计期间表被写入时结果不再放入缓存<br>
+ * 事务中的写入在事务结束(提交或回滚)后才失效, 事务内统计已写入的表时不经过缓存
+ *
+ * @author Endless
+ */
+public final class CountCache {
+
+	private static final Counter HITS = Counter.builder("activejdbc.pagination.count.cache").tag("result", "hit")
+	                                           .description("pagination counts served from the count cache").register(Metrics.globalRegistry);
+	private static final Counter MISSES = Counter.builder("activejdbc.pagination.count.cache").tag("result", "miss")
+	                                             .description("pagination counts executed against the database").register(Metrics.globalRegistry);
+
+	private static final Map<Key, Entry> ENTRIES = new LinkedHashMap<>(64, 0.75f, true);
+	/**
+	 * 每张表的写入版本 失效时在 ENTRIES 锁内递增, 放入缓存前在同一把锁内比较
+	 */
+	private static final Map<String, AtomicLong> VERSIONS = new ConcurrentHashMap<>();
+	/**
+	 * 当前线程事务中写入的表 事务结束后失效
+	 */
+	private static final ThreadLocal<Set<String>> PENDING = new ThreadLocal<>();
+
+	private CountCache() {
+	}
+
+	/**
+	 * 命中时返回缓存的总数, 否则执行统计并缓存结果, 0 同样缓存
+	 */
+	public static Long count(String tableName, String countQuery, Object[] params, Supplier<Long> counter) {
+		ActiveJdbcProperties.Pagination config = ActiveJdbcProperties.current().getPagination();
+		String table = tableName.toLowerCase(Locale.ROOT);
+		Set<String> pending = PENDING.get();
+		if (pending != null && pending.contains(table)) {
+			// 事务内可见未提交的写入, 结果不可共享
+			return counter.get();
+		}
+		long ttl = config.getCountCacheTtls().getOrDefault(table, config.getCountCacheTtl());
+		if (ttl <= 0 || config.getCountCacheSize() <= 0) {
+			return counter.get();
+		}
+		Key key = new Key(table, StatementCache.canonical(countQuery), params);
+		long now = System.currentTimeMillis();
+		synchronized (ENTRIES) {
+			Entry entry = ENTRIES.get(key);
+			if (entry != null && entry.expires > now) {
+				HITS.increment();
+				return entry.count;
+			}
+		}
+		MISSES.increment();
+		AtomicLong version = VERSIONS.computeIfAbsent(table, t -> new AtomicLong());
+		long before = version.get();
+		Long count = counter.get();
+		if (count != null) {
+			synchronized (ENTRIES) {
+				if (version.get() != before) {
+					return count;
+				}
+				ENTRIES.put(key, new Entry(count, now + ttl));
+				Iterator<Key> eldest = ENTRIES.keySet().iterator();
+				while (ENTRIES.size() > config.getCountCacheSize() && eldest.hasNext()) {
+					eldest.next();
+					eldest.remove();
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 表被写入后失效其全部缓存
+	 */
+	public static void invalidate(String tableName) {
+		String table = tableName.toLowerCase(Locale.ROOT);
+		AtomicLong version = VERSIONS.computeIfAbsent(table, t -> new AtomicLong());
+		synchronized (ENTRIES) {
+			version.incrementAndGet();
+			ENTRIES.keySet().removeIf(key -> key.table.equals(table));
+		}
+	}
+
+	/**
+	 * 表被写入后失效其全部缓存, 处于事务中时推迟到事务结束
+	 */
+	public static void invalidateOnCommit(String tableName) {
+		String table = tableName.toLowerCase(Locale.ROOT);
+		Set<String> pending = PENDING.get();
+		if (pending == null && TransactionSynchronizationManager.isSynchronizationActive()) {
+			pending = begin();
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					complete();
+				}
+			});
+		}
+		if (pending == null) {
+			invalidate(table);
+		} else {
+			pending.add(table);
+		}
+	}
+
+	/**
+	 * {@link ContextHelper#openTransaction()} 开启事务时调用
+	 */
+	static Set<String> begin() {
+		Set<String> pending = PENDING.get();
+		if (pending == null) {
+			pending = new HashSet<>();
+			PENDING.set(pending);
+		}
+		return pending;
+	}
+
+	/**
+	 * 事务提交或回滚后失效事务中写入的表
+	 */
+	static void complete() {
+		Set<String> pending = PENDING.get();
+		PENDING.remove();
+		if (pending != null) {
+			pending.forEach(CountCache::invalidate);
+		}
+	}
+
+	public static void clear() {
+		synchronized (ENTRIES) {
+			VERSIONS.values().forEach(AtomicLong::incrementAndGet);
+			ENTRIES.clear();
+		}
+	}
+
+	private static final class Entry {
+		private final Long count;
+		private final long expires;
+
+		private Entry(Long count, long expires) {
+			this.count = count;
+			this.expires = expires;
+		}
+	}
+
+	private static final class Key {
+		private final String table;
+		private final String query;
+		private final List<Object> params;
+		private final int hash;
+
+		private Key(String table, String query, Object[] params) {
+			this.table = table;
+			this.query = query;
+			this.params = params == null ? Collections.emptyList() : Arrays.asList(params.clone());
+			this.hash = Objects.hash(table, query, this.params);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) o;
+			return hash == key.hash && table.equals(key.table) && query.equals(key.query) && params.equals(key.params);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 以主键为键的索引<br>
+ * 整数主键(Integer、Long、整数值的 BigDecimal 等)统一按 long 存放在开放寻址表中, 不装箱, 类型不同的同值主键视为同一个键;
+ * 其它类型的主键退回 HashMap
+ *
+ * @author Endless
+ */
+final class IdIndex<V> {
+
+	private long[] keys;
+	private Object[] values;
+	private int size;
+	private Map<Object, V> others;
+
+	IdIndex(int expectedSize) {
+		int capacity = 16;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		keys = new long[capacity];
+		values = new Object[capacity];
+	}
+
+	V get(Object id) {
+		if (!isIntegral(id)) {
+			return others == null ? null : others.get(id);
+		}
+		return (V) values[slot(keys, values, toLong(id))];
+	}
+
+	V computeIfAbsent(Object id, Supplier<V> supplier) {
+		if (!isIntegral(id)) {
+			if (others == null) {
+				others = new HashMap<>();
+			}
+			return others.computeIfAbsent(id, k -> supplier.get());
+		}
+		long key = toLong(id);
+		int slot = slot(keys, values, key);
+		if (values[slot] == null) {
+			V value = supplier.get();
+			keys[slot] = key;
+			values[slot] = value;
+			if (++size * 2 > keys.length) {
+				resize();
+			}
+			return value;
+		}
+		return (V) values[slot];
+	}
+
+	private void resize() {
+		long[] newKeys = new long[keys.length << 1];
+		Object[] newValues = new Object[values.length << 1];
+		for (int i = 0; i < keys.length; i++) {
+			if (values[i] != null) {
+				int slot = slot(newKeys, newValues, keys[i]);
+				newKeys[slot] = keys[i];
+				newValues[slot] = values[i];
+			}
+		}
+		keys = newKeys;
+		values = newValues;
+	}
+
+	/**
+	 * 线性探测 返回key所在或应插入的位置, 值为null的位置为空
+	 */
+	private static int slot(long[] keys, Object[] values, long key) {
+		int mask = keys.length - 1;
+		long hash = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (hash ^ (hash >>> 32)) & mask;
+		while (values[slot] != null && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+	private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+	/**
+	 * 是否为可按 long 存放的整数主键
+	 */
+	static boolean isIntegral(Object id) {
+		if (id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte) {
+			return true;
+		}
+		if (id instanceof BigInteger) {
+			return ((BigInteger) id).bitLength() < Long.SIZE;
+		}
+		if (id instanceof BigDecimal) {
+			BigDecimal value = (BigDecimal) id;
+			return (value.scale() <= 0 || value.stripTrailingZeros().scale() <= 0)
+					&& value.compareTo(LONG_MIN) >= 0 && value.compareTo(LONG_MAX) <= 0;
+		}
+		return false;
+	}
+
+	/**
+	 * 整数主键转为long, 调用前须以 {@link #isIntegral} 判断
+	 */
+	static long toLong(Object id) {
+		return ((Number) id).longValue();
+	}
+}
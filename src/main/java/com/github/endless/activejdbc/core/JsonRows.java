@@ -0,0 +1,233 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.github.endless.activejdbc.configuration.ActiveJdbcProperties;
+import lombok.SneakyThrows;
+import org.javalite.activejdbc.MetaModel;
+import org.javalite.activejdbc.dialects.Dialect;
+import org.javalite.common.Convert;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 直接由 ResultSet 写出的一页json数据<br>
+ * 不创建 Model 与 Map, 按缓存的字段信息逐行写出, 输出与 Model.toMap 序列化后一致: 字段名小写并排序, 值为null的字段不输出<br>
+ * 序列化时原样写入响应; 作为 List 读取时才解析为map
+ *
+ * @author Endless
+ */
+@JsonSerialize(using = JsonRows.Serializer.class)
+public final class JsonRows extends AbstractList<Map<String, Object>> {
+
+	private static final int MAX_SHAPES = 512;
+	private static final Map<String, Shape> SHAPES = new ConcurrentHashMap<>();
+
+	private final String json;
+	private final int size;
+	private final boolean more;
+	private volatile List<Map<String, Object>> rows;
+
+	private JsonRows(String json, int size, boolean more) {
+		this.json = json;
+		this.size = size;
+		this.more = more;
+	}
+
+	/**
+	 * model未声明回调、未开启查询缓存且配置 activejdbc.pagination.direct-json 开启时可直接写出
+	 */
+	static boolean supported(MetaModel metaModel) {
+		return ActiveJdbcProperties.current().getPagination().isDirectJson() && !metaModel.cached()
+				&& !Callbacks.declared(metaModel.getModelClass());
+	}
+
+	/**
+	 * 写出结果集
+	 *
+	 * @param limit 最多写出的行数, 之后还有数据时 {@link #hasMore()} 为true
+	 */
+	static JsonRows write(MetaModel metaModel, ResultSet resultSet, int limit) throws SQLException, IOException {
+		Shape shape = Shape.of(metaModel.getTableName(), resultSet.getMetaData());
+		Dialect dialect = metaModel.getDialect();
+		StringWriter writer = new StringWriter(Math.max(16, limit) * shape.names.length * 16);
+		int rows = 0;
+		boolean more = false;
+		try (JsonGenerator generator = objectMapper().getFactory().createGenerator(writer)) {
+			generator.writeStartArray();
+			while (resultSet.next()) {
+				if (rows == limit) {
+					more = true;
+					break;
+				}
+				generator.writeStartObject();
+				for (int i : shape.order) {
+					Object value = dialect.overrideDriverTypeConversion(metaModel, shape.labels[i], resultSet.getObject(i + 1));
+					if (value != null) {
+						generator.writeFieldName(shape.names[i]);
+						writeValue(generator, value);
+					}
+				}
+				generator.writeEndObject();
+				rows++;
+			}
+			generator.writeEndArray();
+		}
+		return new JsonRows(writer.toString(), rows, more);
+	}
+
+	/**
+	 * 写出单个字段值 大字段按 {@link #readLob(Object)} 读出, 二进制写为base64
+	 */
+	static void writeValue(JsonGenerator generator, Object value) throws IOException {
+		value = readLob(value);
+		if (value instanceof String) {
+			generator.writeString((String) value);
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short) {
+			generator.writeNumber(((Number) value).longValue());
+		} else if (value instanceof byte[]) {
+			generator.writeBinary((byte[]) value);
+		} else {
+			generator.writeObject(value);
+		}
+	}
+
+	/**
+	 * 驱动返回的大字段对象读出为值: Clob 转为字符串, Blob 转为字节数组
+	 */
+	static Object readLob(Object value) {
+		if (value instanceof Clob) {
+			return Convert.toString(value);
+		}
+		if (value instanceof Blob) {
+			return Convert.toBytes((Blob) value);
+		}
+		return value;
+	}
+
+	static ObjectMapper objectMapper() {
+		ObjectMapper objectMapper = ApplicationContextHelper.getBeanByType(ObjectMapper.class);
+		return objectMapper != null ? objectMapper : new ObjectMapper();
+	}
+
+	/**
+	 * 写出的json数组
+	 */
+	public String toJson() {
+		return json;
+	}
+
+	/**
+	 * 超过limit后是否还有数据
+	 */
+	public boolean hasMore() {
+		return more;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Map<String, Object> get(int index) {
+		return rows().get(index);
+	}
+
+	@Override
+	public String toString() {
+		return json;
+	}
+
+	@SneakyThrows
+	private List<Map<String, Object>> rows() {
+		if (rows == null) {
+			rows = Collections.unmodifiableList(objectMapper().readValue(json, new TypeReference<List<Map<String, Object>>>() {
+			}));
+		}
+		return rows;
+	}
+
+	public static final class Serializer extends StdSerializer<JsonRows> {
+
+		public Serializer() {
+			super(JsonRows.class);
+		}
+
+		@Override
+		public void serialize(JsonRows value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+			generator.writeRawValue(value.json);
+		}
+	}
+
+	/**
+	 * 结果集的字段信息: 原始字段名、小写后预编码的json字段名与排序后的输出顺序(同名字段取最后一个, 与 Model.toMap 一致)<br>
+	 * 按表名与字段数缓存, 字段名不一致(如返回字段不同)时重建
+	 */
+	private static final class Shape {
+		final String[] labels;
+		final SerializedString[] names;
+		final int[] order;
+
+		private Shape(String[] labels) {
+			this.labels = labels;
+			this.names = new SerializedString[labels.length];
+			TreeMap<String, Integer> sorted = new TreeMap<>();
+			for (int i = 0; i < labels.length; i++) {
+				String name = labels[i].toLowerCase(Locale.ROOT);
+				names[i] = new SerializedString(name);
+				sorted.put(name, i);
+			}
+			this.order = sorted.values().stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		static Shape of(String tableName, ResultSetMetaData metaData) throws SQLException {
+			String key = tableName + ':' + metaData.getColumnCount();
+			String[] labels = new String[metaData.getColumnCount()];
+			for (int i = 0; i < labels.length; i++) {
+				labels[i] = metaData.getColumnLabel(i + 1);
+			}
+			Shape shape = SHAPES.get(key);
+			if (shape != null && Arrays.equals(shape.labels, labels)) {
+				return shape;
+			}
+			shape = new Shape(labels);
+			if (SHAPES.size() >= MAX_SHAPES) {
+				SHAPES.clear();
+			}
+			SHAPES.put(key, shape);
+			return shape;
+		}
+	}
+}
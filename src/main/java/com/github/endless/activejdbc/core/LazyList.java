@@ -31,6 +31,10 @@ import org.springframework.util.CollectionUtils;
 
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.*;
 
 import static org.javalite.activejdbc.ModelDelegate.metaModelOf;
@@ -79,7 +83,7 @@ public class LazyList<T extends Model> extends AbstractLazyList<T> implements Ex
         this.columns = CollectionUtils.isEmpty(columns) ? null : columns.toArray(new String[columns.size()]);
     }
 
-    //TODO: this is only used by SuperLazyList, to be reviewed?
+    //empty in-memory list, used by the public LazyModelList() constructor
     protected LazyList() {
         delegate = new ArrayList<>();
         this.fullQuery = null;
@@ -378,6 +382,30 @@ public class LazyList<T extends Model> extends AbstractLazyList<T> implements Ex
         processIncludes();
     }
 
+    /**
+     * 不创建 Model 与 Map, 直接将结果集写为json数组, 输出与 toMaps() 序列化后一致<br>
+     * 仅在 {@link JsonRows#supported(MetaModel)} 时使用, 不处理 include
+     *
+     * @param limit 最多写出的行数
+     */
+    JsonRows toJsonRows(int limit) {
+        String sql = toSql(false);
+        long start = System.currentTimeMillis();
+        Connection connection = new DB(metaModel.getDbName()).connection();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return JsonRows.write(metaModel, resultSet, limit);
+            }
+        } catch (SQLException | IOException e) {
+            throw new DBException(sql, params, e);
+        } finally {
+            LogFilter.logQuery(LOGGER, sql, params, start, false);
+        }
+    }
+
     private boolean hydrated() {
         return delegate != null;
     }
@@ -399,7 +427,7 @@ public class LazyList<T extends Model> extends AbstractLazyList<T> implements Ex
     }
 
     /**
-     *
+     * 多态父表 按 parent_type 与 parent_id 定位父model
      */
     private void processPolymorphicParent(BelongsToPolymorphicAssociation association) {
         if (delegate.isEmpty()) { // no need to process children if no models selected.
@@ -412,20 +440,18 @@ public class LazyList<T extends Model> extends AbstractLazyList<T> implements Ex
             return;
         }
         final MetaModel parentMetaModel = metaModelOf(association.getTargetClass());
-        final Map<Object, Model> parentById = new HashMap<>();
-
-        StringBuilder query = new StringBuilder().append(parentMetaModel.getIdName()).append(" IN (");
-        appendQuestions(query, distinctParentIds.size());
-        query.append(')');
-        for (Model parent : new LazyList<>(query.toString(), parentMetaModel, null, distinctParentIds.toArray())) {
-            parentById.put(association.getParentClassName() + ":" + parent.getId(), parent);
+        final IdIndex<Model> parentById = new IdIndex<>(distinctParentIds.size());
+        for (List<Object> ids : new Partition<>(new ArrayList<>(distinctParentIds), TreeLoader.parameterLimit(parentMetaModel))) {
+            for (Model parent : new LazyList<>(inQuery(parentMetaModel.getIdName(), ids.size()), parentMetaModel, null, ids.toArray())) {
+                parentById.computeIfAbsent(parent.getId(), () -> parent);
+            }
         }
-
         //now that we have the parents in the has, we need to distribute them into list of children that are
         //stored in the delegate.
         for (Model child : delegate) {
-            // parent could be null, which is fine
-//            child.setCachedParent(parentById.get(association.getParentClassName() + ":" + child.get("parent_id")));
+            if (association.getParentClassName().equals(child.get("parent_type"))) {
+                TreeLoader.attachParent(child, parentById.get(child.get("parent_id")));
+            }
         }
     }
 
@@ -440,19 +466,17 @@ public class LazyList<T extends Model> extends AbstractLazyList<T> implements Ex
             return;
         }
         final MetaModel parentMetaModel = metaModelOf(association.getTargetClass());
-        final Map<Object, Model> parentById = new HashMap<>();
-
-        StringBuilder query = new StringBuilder().append(parentMetaModel.getIdName()).append(" IN (");
-        appendQuestions(query, distinctParentIds.size());
-        query.append(')');
-        for (Model parent : new LazyList<>(query.toString(), parentMetaModel, null, distinctParentIds.toArray())) {
-            parentById.put(parent.getId(), parent);
+        final IdIndex<Model> parentById = new IdIndex<>(distinctParentIds.size());
+        for (List<Object> ids : new Partition<>(new ArrayList<>(distinctParentIds), TreeLoader.parameterLimit(parentMetaModel))) {
+            for (Model parent : new LazyList<>(inQuery(parentMetaModel.getIdName(), ids.size()), parentMetaModel, null, ids.toArray())) {
+                parentById.computeIfAbsent(parent.getId(), () -> parent);
+            }
         }
         //now that we have the parents in the has, we need to distribute them into list of children that are
         //stored in the delegate.
         for (Model child : delegate) {
             // parent could be null, which is fine
-//            child.setCachedParent(parentById.get(child.get(association.getFkName())));
+            TreeLoader.attachParent(child, parentById.get(child.get(association.getFkName())));
         }
     }
 
@@ -517,59 +541,63 @@ public class LazyList<T extends Model> extends AbstractLazyList<T> implements Ex
         joinAndRepeat(sb, "?", ", ", count);
     }
 
+    private String inQuery(String column, int count) {
+        StringBuilder query = new StringBuilder().append(column).append(" IN (");
+        appendQuestions(query, count);
+        return query.append(')').toString();
+    }
+
+    /**
+     * 当前列表中去重后的非空主键
+     */
+    private List<Object> distinctIds() {
+        Set<Object> ids = collectDistinct(metaModel.getIdName());
+        ids.remove(null);
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * 将按父主键分组的子表数据挂到每个父model上, 没有子表数据的挂空列表
+     */
+    private void attachChildren(Class<? extends Model> childClass, IdIndex<List<Model>> childrenByParentId) {
+        for (T parent : delegate) {
+            TreeLoader.attach(parent, childClass, childrenByParentId.get(parent.getId()));
+        }
+    }
+
     private void processPolymorphicChildren(OneToManyPolymorphicAssociation association) {
         if (delegate.isEmpty()) {//no need to process children if no models selected.
             return;
         }
         MetaModel childMetaModel = metaModelOf(association.getTargetClass());
-        Map<Object, List<Model>> childrenByParentId = new HashMap<>();
-        List<Object> ids = collect(metaModel.getIdName());
-        StringBuilder query = new StringBuilder().append("parent_id IN (");
-        appendQuestions(query, ids.size());
-        query.append(") AND parent_type = '").append(association.getTypeLabel()).append('\'');
-        for (Model child : new LazyList<>(query.toString(), childMetaModel, null, ids.toArray()).orderBy(childMetaModel.getIdName())) {
-            if (childrenByParentId.get(child.get("parent_id")) == null) {
-                childrenByParentId.put(child.get("parent_id"), new SuperLazyList<>());
-            }
-            childrenByParentId.get(child.get("parent_id")).add(child);
-        }
-
-        for (T parent : delegate) {
-            List<Model> children = childrenByParentId.get(parent.getId());
-            if (children != null) {
-//                parent.setChildren(childMetaModel.getModelClass(), children);
-            } else {
-//                parent.setChildren(childMetaModel.getModelClass(), new SuperLazyList<>());
+        List<Object> ids = distinctIds();
+        IdIndex<List<Model>> childrenByParentId = new IdIndex<>(ids.size());
+        for (List<Object> chunk : new Partition<>(ids, TreeLoader.parameterLimit(childMetaModel))) {
+            String query = inQuery("parent_id", chunk.size()) + " AND parent_type = '" + association.getTypeLabel() + '\'';
+            for (Model child : new LazyList<>(query, childMetaModel, null, chunk.toArray()).orderBy(childMetaModel.getIdName())) {
+                childrenByParentId.computeIfAbsent(child.get("parent_id"), ArrayList::new).add(child);
             }
         }
+        attachChildren(childMetaModel.getModelClass(), childrenByParentId);
     }
 
-
+    /**
+     * 每批父主键一条 IN 查询, 子表数据按外键分组后直接挂到父model上, 之后不再查询
+     */
     private void processChildren(OneToManyAssociation association) {
         if (delegate.isEmpty()) {//no need to process children if no models selected.
             return;
         }
         final MetaModel childMetaModel = metaModelOf(association.getTargetClass());
         final String fkName = association.getFkName();
-        final Map<Object, List<Model>> childrenByParentId = new HashMap<>();
-        List<Object> ids = collect(metaModel.getIdName());
-        StringBuilder query = new StringBuilder().append(fkName).append(" IN (");
-        appendQuestions(query, ids.size());
-        query.append(')');
-        for (Model child : new LazyList<>(query.toString(), childMetaModel, null, ids.toArray()).orderBy(childMetaModel.getIdName())) {
-            if (childrenByParentId.get(child.get(fkName)) == null) {
-                childrenByParentId.put(child.get(fkName), new SuperLazyList<>());
-            }
-            childrenByParentId.get(child.get(fkName)).add(child);
-        }
-        for (T parent : delegate) {
-            List<Model> children = childrenByParentId.get(parent.getId());
-            if (children != null) {
-//                parent.setChildren(childMetaModel.getModelClass(), children);
-            } else {
-//                parent.setChildren(childMetaModel.getModelClass(), new SuperLazyList<>());
+        List<Object> ids = distinctIds();
+        IdIndex<List<Model>> childrenByParentId = new IdIndex<>(ids.size());
+        for (List<Object> chunk : new Partition<>(ids, TreeLoader.parameterLimit(childMetaModel))) {
+            for (Model child : new LazyList<>(inQuery(fkName, chunk.size()), childMetaModel, null, chunk.toArray()).orderBy(childMetaModel.getIdName())) {
+                childrenByParentId.computeIfAbsent(child.get(fkName), ArrayList::new).add(child);
             }
         }
+        attachChildren(childMetaModel.getModelClass(), childrenByParentId);
     }
 
     private void processManyToMany(Many2ManyAssociation association) {
@@ -577,26 +605,17 @@ public class LazyList<T extends Model> extends AbstractLazyList<T> implements Ex
             return;
         }
         final MetaModel childMetaModel = metaModelOf(association.getTargetClass());
-        final Map<Object, List<Model>> childrenByParentId = new HashMap<>();
-        List<Object> ids = collect(metaModel.getIdName());
-        List<Map> childResults = new DB(childMetaModel.getDbName()).findAll(childMetaModel.getDialect().selectManyToManyAssociation(
-                association, "the_parent_record_id", ids.size()), ids.toArray());
-        for (Map res : childResults) {
-            Model child = instance(res, childMetaModel);
-            Object parentId = res.get("the_parent_record_id");
-            if (childrenByParentId.get(parentId) == null) {
-                childrenByParentId.put(parentId, new SuperLazyList<>());
-            }
-            childrenByParentId.get(parentId).add(child);
-        }
-        for (T parent : delegate) {
-            List<Model> children = childrenByParentId.get(parent.getId());
-            if (children != null) {
-//                parent.setChildren(childMetaModel.getModelClass(), children);
-            } else {
-//                parent.setChildren(childMetaModel.getModelClass(), new SuperLazyList<>());
+        List<Object> ids = distinctIds();
+        IdIndex<List<Model>> childrenByParentId = new IdIndex<>(ids.size());
+        for (List<Object> chunk : new Partition<>(ids, TreeLoader.parameterLimit(childMetaModel))) {
+            List<Map> childResults = new DB(childMetaModel.getDbName()).findAll(childMetaModel.getDialect().selectManyToManyAssociation(
+                    association, "the_parent_record_id", chunk.size()), chunk.toArray());
+            for (Map res : childResults) {
+                Model child = instance(res, childMetaModel);
+                childrenByParentId.computeIfAbsent(res.get("the_parent_record_id"), ArrayList::new).add(child);
             }
         }
+        attachChildren(childMetaModel.getModelClass(), childrenByParentId);
     }
 
     /**
@@ -18,6 +18,7 @@
 
 package com.github.endless.activejdbc.core;
 
+import com.github.endless.activejdbc.configuration.ActiveJdbcProperties;
 import com.github.endless.activejdbc.constant.Keys;
 import com.github.endless.activejdbc.model.BaseModel;
 import com.github.endless.activejdbc.query.Helper;
@@ -35,11 +36,13 @@ import org.javalite.activejdbc.annotations.Table;
 import org.javalite.common.Collections;
 import org.javalite.common.Convert;
 import org.javalite.common.JsonHelper;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.ReflectionUtils;
 
 import javax.sql.DataSource;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -48,10 +51,17 @@ import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
@@ -66,6 +76,18 @@ import static com.github.endless.activejdbc.query.Helper.convertList;
 public class MemoryCompiler {
 
 	private static final String TABLE_CAT = "TABLE_CAT", TABLE_NAME = "TABLE_NAME", TABLE_SCHEM = "TABLE_SCHEM", COLUMN_NAME = "COLUMN_NAME";
+	private static volatile Properties prebuiltModels;
+	private static ClassPool generationPool;
+	private static ModelClassLoader generationLoader;
+	/**
+	 * 仍有model使用的generation 不再使用时移除并退役
+	 */
+	private static final List<ModelClassLoader> generations = new ArrayList<>();
+	private static final Map<String, LazyTable> lazyTables = new ConcurrentHashMap<>();
+	/**
+	 * 已生成并注册的动态model对应的表结构, 增量刷新时以此比对
+	 */
+	private static final Map<String, MetaTable> registeredTables = new ConcurrentHashMap<>();
 
 
 	public static void main(String[] args) {
@@ -73,7 +95,7 @@ public class MemoryCompiler {
 	}
 
 
-	private static Map<String, ColumnMetadata> fetchMetaParams(DatabaseMetaData databaseMetaData, String dbType, String table) {
+	static Map<String, ColumnMetadata> fetchMetaParams(DatabaseMetaData databaseMetaData, String dbType, String table) {
 		Method fetchMetaParams = ReflectionUtils.findMethod(Registry.class, "fetchMetaParams", DatabaseMetaData.class, String.class, String.class);
 		ReflectionUtils.makeAccessible(fetchMetaParams);
 		return (Map<String, ColumnMetadata>) ReflectionUtils.invokeMethod(fetchMetaParams, Registry.instance(), databaseMetaData, dbType, table);
@@ -93,6 +115,7 @@ public class MemoryCompiler {
 
 	public static void invokeActive() {
 		Set<MetaModel> metaModels = getModelsForDb();
+		currentGeneration().complete();
 		Collector<MetaModel, ?, Set<String>> mapping = Collectors.mapping(e -> e.getModelClass().getSimpleName(), Collectors.toSet());
 		Map<String, Set<String>> modelMap = metaModels.stream().collect(Collectors.groupingBy(MetaModel::getDbName, mapping));
 		ContextHelper.setField(null, ModelFinder.class, "modelMap", modelMap);
@@ -100,45 +123,241 @@ public class MemoryCompiler {
 
 	static Set<MetaModel> getModelsForDb() {
 		Set<MetaModel> metaModels = new HashSet<>();
-		ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+		boolean lazy = ActiveJdbcProperties.current().getModels().isLazy();
 		Map<String, Class<Model>> contextModels = ContextModelInitialize.getContextModels();
 		Map<String, DataSource> dataSources = ApplicationContextHelper.getBeansOfType(DataSource.class);
-		Set<Map<String, String>> primaryKeys = new HashSet<>();
-		for (Map.Entry<String, DataSource> dataSourceEntry : dataSources.entrySet()) {
+		Set<String> initedDbs = ContextHelper.getField(Registry.instance(), "initedDbs", Set.class);
+		for (MetaCatalog catalog : SchemaSnapshot.catalogs(dataSources)) {
 			try {
-				log.info("lookup dataSource :{} ", dataSourceEntry);
-				Set<MetaTable> metaTables = getTablesForDb(dataSourceEntry);
-				Connection connection = DataSourceUtils.doGetConnection(dataSourceEntry.getValue());
-				DatabaseMetaData databaseMetaData = connection.getMetaData();
-				String dbType = connection.getMetaData().getDatabaseProductName();
-				String dbName = connection.getCatalog();
-				ApplicationContextHelper.dataSourceKeys.add(connection.getCatalog());
-				Set<String> initedDbs = ContextHelper.getField(Registry.instance(), "initedDbs", Set.class);
-				initedDbs.add(dbName);
-				for (MetaTable metaTable : metaTables) {
-					Class<? extends Model> modelClass = getDynamicModelClass(metaTable, classLoader);
-					if (modelClass != null && !modelClass.equals(Model.class) && Model.class.isAssignableFrom(modelClass)) {
-						if (!contextModels.containsKey(modelClass.getAnnotation(Table.class).value())) {
-							contextModels.put(modelClass.getAnnotation(Table.class).value(), (Class<Model>) modelClass);
-							MetaModel metaModel = metaModelOf(metaTable.dbName, modelClass, dbType);
-							metaModels.add(metaModel);
-							registerModels(metaTable.dbName, Collections.set(modelClass), dbType);
-							registerColumnMetadata(metaTable.tableName, fetchMetaParams(databaseMetaData, dbType, metaTable.tableName));
-							log.info("initialized table {} > model {}", metaTable.tableName, modelClass);
-						}
+				ApplicationContextHelper.addDataSourceKey(catalog.getDbName());
+				initedDbs.add(catalog.getDbName());
+				for (MetaTable metaTable : catalog.getTables()) {
+					String tableName = metaTable.tableName.toLowerCase();
+					if (contextModels.containsKey(tableName)) {
+						continue;
+					}
+					if (lazy) {
+						addLazyTable(metaTable, catalog.getDbType());
 					} else {
-						throw new InitException("invalid class in the models list: " + modelClass.getName());
+						metaModels.add(registerTable(metaTable, catalog.getDbType()));
 					}
 				}
-				DataSourceUtils.releaseConnection(connection, dataSourceEntry.getValue());
 			} catch (Exception e) {
 				throw new InitException(e);
 			}
 		}
-
+		if (lazy) {
+			log.info("lazy mode : {} tables will be initialized on first access", lazyTables.size());
+		}
 		return metaModels;
 	}
 
+	/**
+	 * 懒加载模式下首次访问时生成并注册model, 同一张表只会注册一次<br>
+	 * 注册完成后才移除懒加载项, 并发访问同一张表的线程在锁内等待注册完成; 注册失败时回滚已写入Registry的部分, 下次访问重试
+	 *
+	 * @return 已注册的MetaModel, 表不存在时返回null
+	 */
+	static MetaModel registerLazyTable(String tableName) {
+		String key = tableName.toLowerCase();
+		if (!lazyTables.containsKey(key)) {
+			return Registry.instance().getMetaModel(tableName);
+		}
+		synchronized (MemoryCompiler.class) {
+			LazyTable lazyTable = lazyTables.get(key);
+			if (lazyTable == null) {
+				return Registry.instance().getMetaModel(tableName);
+			}
+			try {
+				MetaModel metaModel = registerTable(lazyTable.metaTable, lazyTable.dbType);
+				ContextModelInitialize.bindListeners((Class<Model>) metaModel.getModelClass());
+				lazyTables.remove(key);
+				return metaModel;
+			} catch (RuntimeException e) {
+				registeredTables.remove(key);
+				discardModel(key);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * 登记懒加载的表 首次访问时由 {@link #registerLazyTable(String)} 注册
+	 */
+	static void addLazyTable(MetaTable metaTable, String dbType) {
+		lazyTables.putIfAbsent(metaTable.tableName.toLowerCase(), new LazyTable(metaTable, dbType));
+	}
+
+	/**
+	 * 生成model并注册到Registry
+	 */
+	private static synchronized MetaModel registerTable(MetaTable metaTable, String dbType) {
+		return registerTable(metaTable, getDynamicModelClass(metaTable, ClassUtils.getDefaultClassLoader()), dbType);
+	}
+
+	private static synchronized MetaModel registerTable(MetaTable metaTable, Class<? extends Model> modelClass, String dbType) {
+		if (modelClass == null || modelClass.equals(Model.class) || !Model.class.isAssignableFrom(modelClass)) {
+			throw new InitException("invalid class in the models list: " + fullClassName(metaTable.tableName));
+		}
+		try {
+			ContextModelInitialize.getContextModels().put(modelClass.getAnnotation(Table.class).value(), (Class<Model>) modelClass);
+			MetaModel metaModel = metaModelOf(metaTable.dbName, modelClass, dbType);
+			registerModels(metaTable.dbName, Collections.set(modelClass), dbType);
+			registerColumnMetadata(metaTable.tableName, metaTable.getColumns());
+			registeredTables.put(metaTable.tableName.toLowerCase(), metaTable);
+			log.info("initialized table {} > model {}", metaTable.tableName, modelClass);
+			return metaModel;
+		} catch (InitException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new InitException(e);
+		}
+	}
+
+	/**
+	 * 增量刷新表结构: 与已注册的model比对, 只重新生成新增或变化的表, 移除已删除的表<br>
+	 * 扫描在锁外进行; 新的model类在锁内全部生成后再逐表替换Registry中的引用, 不修改旧的MetaModel与字段元数据,
+	 * 正在执行的请求继续使用其已取得的旧model与字段元数据<br>
+	 * 新增或主键、库名变化的表需要新的model类, 这些类在新的generation中生成; 只有字段变化的表仅替换字段元数据
+	 */
+	public static SchemaChanges refreshIncremental() {
+		Map<String, DataSource> dataSources = ApplicationContextHelper.getBeansOfType(DataSource.class);
+		List<MetaCatalog> catalogs = SchemaIntrospector.introspect(dataSources);
+		synchronized (MemoryCompiler.class) {
+			SchemaChanges changes = new SchemaChanges();
+			boolean lazy = ActiveJdbcProperties.current().getModels().isLazy();
+			Map<String, Class<Model>> contextModels = ContextModelInitialize.getContextModels();
+			Set<String> initedDbs = ContextHelper.getField(Registry.instance(), "initedDbs", Set.class);
+			Set<String> tableNames = new HashSet<>();
+			List<LazyTable> columnChanges = new ArrayList<>();
+			List<LazyTable> classChanges = new ArrayList<>();
+			for (MetaCatalog catalog : catalogs) {
+				ApplicationContextHelper.addDataSourceKey(catalog.getDbName());
+				initedDbs.add(catalog.getDbName());
+				for (MetaTable metaTable : catalog.getTables()) {
+					String tableName = metaTable.tableName.toLowerCase();
+					if (!tableNames.add(tableName)) {
+						continue;
+					}
+					MetaTable registered = registeredTables.get(tableName);
+					LazyTable pending = lazyTables.get(tableName);
+					MetaTable previous = registered != null ? registered : pending != null ? pending.metaTable : null;
+					if (previous == null) {
+						if (contextModels.containsKey(tableName)) {
+							continue;
+						}
+						changes.added.add(tableName);
+					} else if (sameModel(previous, metaTable) && sameColumns(previous, metaTable)) {
+						continue;
+					} else {
+						changes.changed.add(tableName);
+					}
+					LazyTable table = new LazyTable(metaTable, catalog.getDbType());
+					if (registered == null && lazy) {
+						lazyTables.put(tableName, table);
+					} else if (registered != null && sameModel(registered, metaTable)) {
+						columnChanges.add(table);
+					} else {
+						classChanges.add(table);
+					}
+				}
+			}
+			for (String tableName : registeredTables.keySet()) {
+				if (!tableNames.contains(tableName)) {
+					changes.removed.add(tableName);
+				}
+			}
+			for (String tableName : lazyTables.keySet()) {
+				if (!tableNames.contains(tableName)) {
+					changes.removed.add(tableName);
+				}
+			}
+			if (changes.isEmpty()) {
+				log.info("schema refresh : no changes");
+				return changes;
+			}
+			// 同名类不能在同一加载器中重复定义, 新的model类总是在新的generation中生成
+			boolean replaceClasses = !classChanges.isEmpty();
+			if (replaceClasses && generationLoader != null) {
+				generationLoader.complete();
+				generationPool = null;
+				generationLoader = null;
+			}
+			Map<LazyTable, Class<? extends Model>> modelClasses = new LinkedHashMap<>();
+			for (LazyTable table : classChanges) {
+				modelClasses.put(table, getDynamicModelClass(table.metaTable, ClassUtils.getDefaultClassLoader()));
+			}
+			if (replaceClasses) {
+				currentGeneration().complete();
+			}
+			for (String tableName : changes.removed) {
+				unregisterTable(tableName);
+			}
+			for (LazyTable table : columnChanges) {
+				registerColumnMetadata(table.metaTable.tableName, table.metaTable.getColumns());
+				registeredTables.put(table.metaTable.tableName.toLowerCase(), table.metaTable);
+			}
+			for (Map.Entry<LazyTable, Class<? extends Model>> modelClass : modelClasses.entrySet()) {
+				MetaModel metaModel = registerTable(modelClass.getKey().metaTable, modelClass.getValue(), modelClass.getKey().dbType);
+				ContextModelInitialize.bindListeners((Class<Model>) metaModel.getModelClass());
+			}
+			Map<String, Set<String>> modelMap = new HashMap<>();
+			for (Class<Model> modelClass : contextModels.values()) {
+				modelMap.computeIfAbsent(Registry.instance().getMetaModel(modelClass).getDbName(), key -> new HashSet<>()).add(modelClass.getSimpleName());
+			}
+			ContextHelper.setField(null, ModelFinder.class, "modelMap", modelMap);
+			retireUnused();
+			log.info("schema refresh : {}", changes);
+			return changes;
+		}
+	}
+
+	/**
+	 * 主键与库名相同时可沿用原model类
+	 */
+	private static boolean sameModel(MetaTable previous, MetaTable current) {
+		return previous.idName.equalsIgnoreCase(current.idName) && Objects.equals(previous.dbName, current.dbName);
+	}
+
+	private static boolean sameColumns(MetaTable previous, MetaTable current) {
+		Map<String, ColumnMetadata> before = previous.getColumns();
+		Map<String, ColumnMetadata> after = current.getColumns();
+		if (before == null || after == null || before.size() != after.size()) {
+			return before == after;
+		}
+		for (ColumnMetadata column : after.values()) {
+			ColumnMetadata old = before.get(column.getColumnName());
+			if (old == null || !Objects.equals(old.getTypeName(), column.getTypeName()) || old.getColumnSize() != column.getColumnSize()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 移除已删除的表 Registry中按表名与类名的索引一并移除
+	 */
+	private static void unregisterTable(String tableName) {
+		lazyTables.remove(tableName);
+		if (registeredTables.remove(tableName) == null) {
+			return;
+		}
+		log.info("removed table {} > model {}", tableName, discardModel(tableName));
+	}
+
+	/**
+	 * 从Registry中按表名与类名移除model
+	 */
+	private static Class<Model> discardModel(String tableName) {
+		Class<Model> modelClass = ContextModelInitialize.getContextModels().remove(tableName);
+		Object metaModels = ContextHelper.getField(Registry.instance(), "metaModels", Object.class);
+		ContextHelper.getField(metaModels, "metaModelsByTableName", Map.class).remove(tableName);
+		if (modelClass != null) {
+			ContextHelper.getField(metaModels, "metaModelsByClassName", Map.class).remove(modelClass.getName());
+		}
+		return modelClass;
+	}
+
 	public static Set<MetaTable> getTablesForDb(Map.Entry<String, DataSource> dataSourceEntry) throws SQLException {
 		Connection connection = DataSourceUtils.doGetConnection(dataSourceEntry.getValue());
 		if (connection == null) {
@@ -176,30 +395,133 @@ public class MemoryCompiler {
 		return (MetaModel) constructor.newInstance(dbName, modelClass, dbType);
 	}
 
-	public static Class<? extends Model> getDynamicModelClass(MetaTable metaTable, ClassLoader classLoader) {
+	public static synchronized Class<? extends Model> getDynamicModelClass(MetaTable metaTable, ClassLoader classLoader) {
+		Class<? extends Model> prebuilt = getPrebuiltModelClass(metaTable, classLoader);
+		if (prebuilt != null) {
+			return prebuilt;
+		}
 		try {
-			String className = fullClassName(metaTable.tableName);
-			ClassPool assist = new ClassPool(true);
-			assist.appendClassPath(new LoaderClassPath(classLoader));
-			CtClass superClass = assist.getCtClass(BaseModel.class.getName());
-			CtClass ctClass = assist.makeClass(className);
-			ctClass.setSuperclass(superClass);
-			CtConstructor constructor = new CtConstructor(new CtClass[]{}, ctClass);
-			constructor.setBody("{}");
-			ctClass.addConstructor(constructor);
-			CtMethod modelGetClass = assist.getCtClass(Model.class.getName()).getDeclaredMethod("modelClass");
-			CtMethod newGetClass = CtNewMethod.copy(modelGetClass, ctClass, null);
-			newGetClass.setBody("{return " + className + ".class;}");
-			ctClass.addMethod(newGetClass);
-			ctClass.defrost();
-			ByteArrayClassLoader loader = new ByteArrayClassLoader(ClassUtils.getDefaultClassLoader());
-			addAnnotation(ctClass, metaTable);
-			ctClass.writeFile();
-			return (Class<? extends Model>) ctClass.toClass(loader, ctClass.getClass().getProtectionDomain());
-		} catch (Exception e) {
-			e.printStackTrace();
+			ModelClassLoader loader = currentGeneration();
+			CtClass ctClass = makeModelClass(metaTable, generationPool);
+			Class<?> modelClass = loader.loadClass(ctClass.getName(), ctClass.toBytecode());
+			ctClass.detach();
+			return (Class<? extends Model>) modelClass;
+		} catch (Exception | LinkageError e) {
+			log.error("failed to generate model for table {}", metaTable.tableName, e);
+			return null;
+		}
+	}
+
+	/**
+	 * 当前generation的类加载器, 同一generation的所有动态model共用一个ClassPool与类加载器
+	 */
+	static synchronized ModelClassLoader currentGeneration() {
+		if (generationLoader == null) {
+			ClassLoader parent = ClassUtils.getDefaultClassLoader();
+			generationPool = new ClassPool(true);
+			generationPool.appendClassPath(new LoaderClassPath(parent));
+			generationLoader = new ModelClassLoader(parent);
+			generations.add(generationLoader);
+			log.info("model generation {} started", generationLoader.getGeneration());
+		}
+		return generationLoader;
+	}
+
+	/**
+	 * 开始新的generation: 丢弃当前ClassPool与类加载器, 并移除其生成的model,
+	 * 重新注册后旧generation不再被引用, 可整体卸载
+	 */
+	static synchronized void nextGeneration() {
+		if (generationLoader != null) {
+			ModelClassLoader previous = generationLoader;
+			ContextModelInitialize.getContextModels().values().removeIf(modelClass -> modelClass.getClassLoader() == previous);
+			log.info("model generation {} retired : {} classes, {} bytes metaspace", previous.getGeneration(), previous.getClassCount(), previous.getMetaspace());
+		}
+		generationPool = null;
+		generationLoader = null;
+		lazyTables.clear();
+		registeredTables.clear();
+		retireUnused();
+	}
+
+	/**
+	 * 退役不再有已注册model使用的generation, 移除其指标
+	 */
+	private static synchronized void retireUnused() {
+		Set<ClassLoader> used = new HashSet<>();
+		for (Class<Model> modelClass : ContextModelInitialize.getContextModels().values()) {
+			used.add(modelClass.getClassLoader());
+		}
+		Iterator<ModelClassLoader> iterator = generations.iterator();
+		while (iterator.hasNext()) {
+			ModelClassLoader loader = iterator.next();
+			if (loader != generationLoader && !used.contains(loader)) {
+				iterator.remove();
+				loader.retire();
+				log.info("model generation {} released", loader.getGeneration());
+			}
+		}
+	}
+
+	/**
+	 * 生成model字节码 运行时与构建时 {@link ModelClassGenerator} 共用
+	 */
+	static CtClass makeModelClass(MetaTable metaTable, ClassPool assist) throws Exception {
+		String className = fullClassName(metaTable.tableName);
+		CtClass superClass = assist.getCtClass(BaseModel.class.getName());
+		CtClass ctClass = assist.makeClass(className);
+		ctClass.setSuperclass(superClass);
+		CtConstructor constructor = new CtConstructor(new CtClass[]{}, ctClass);
+		constructor.setBody("{}");
+		ctClass.addConstructor(constructor);
+		CtMethod modelGetClass = assist.getCtClass(Model.class.getName()).getDeclaredMethod("modelClass");
+		CtMethod newGetClass = CtNewMethod.copy(modelGetClass, ctClass, null);
+		newGetClass.setBody("{return " + className + ".class;}");
+		ctClass.addMethod(newGetClass);
+		ctClass.defrost();
+		addAnnotation(ctClass, metaTable);
+		return ctClass;
+	}
+
+	/**
+	 * 加载构建时生成并打包在classpath中的model, 表名、主键或库名与当前表结构不一致时返回null 由运行时生成
+	 */
+	static Class<? extends Model> getPrebuiltModelClass(MetaTable metaTable, ClassLoader classLoader) {
+		String className = prebuiltModels(classLoader).getProperty(metaTable.tableName.toLowerCase());
+		if (className == null) {
 			return null;
 		}
+		try {
+			Class<?> clazz = ClassUtils.forName(className, classLoader);
+			Table table = clazz.getAnnotation(Table.class);
+			IdName idName = clazz.getAnnotation(IdName.class);
+			DbName dbName = clazz.getAnnotation(DbName.class);
+			if (BaseModel.class.isAssignableFrom(clazz) && table != null && idName != null && dbName != null
+					&& table.value().equals(metaTable.tableName.toLowerCase()) && idName.value().equals(metaTable.idName.toLowerCase())
+					&& dbName.value().equals(metaTable.dbName)) {
+				return (Class<? extends Model>) clazz;
+			}
+			log.warn("prebuilt model {} does not match table {}, generate at runtime", className, metaTable.tableName);
+		} catch (ClassNotFoundException | LinkageError e) {
+			log.warn("failed to load prebuilt model {}, generate at runtime", className);
+		}
+		return null;
+	}
+
+	private static Properties prebuiltModels(ClassLoader classLoader) {
+		if (prebuiltModels == null) {
+			synchronized (MemoryCompiler.class) {
+				if (prebuiltModels == null) {
+					try {
+						prebuiltModels = PropertiesLoaderUtils.loadAllProperties(Keys.GENERATED_MODELS_RESOURCE, classLoader);
+					} catch (IOException e) {
+						log.warn("failed to load {}", Keys.GENERATED_MODELS_RESOURCE, e);
+						prebuiltModels = new Properties();
+					}
+				}
+			}
+		}
+		return prebuiltModels;
 	}
 
 	private static CtClass addAnnotation(CtClass ctClass, MetaTable metaTable) throws Exception {
@@ -236,7 +558,7 @@ public class MemoryCompiler {
 	/**
 	 * 包名+类名
 	 */
-	private static String fullClassName(String tableName) {
+	static String fullClassName(String tableName) {
 		return MessageFormat.format(Keys.MSG_CLASS_NAME, Helper.toUpperFirstCode(Helper.lineToHump(tableName)));
 	}
 
@@ -260,4 +582,14 @@ public class MemoryCompiler {
 		return null;
 	}
 
+	private static class LazyTable {
+		final MetaTable metaTable;
+		final String dbType;
+
+		LazyTable(MetaTable metaTable, String dbType) {
+			this.metaTable = metaTable;
+			this.dbType = dbType;
+		}
+	}
+
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 一个数据源的表结构扫描结果
+ *
+ * @author Endless
+ */
+public class MetaCatalog {
+	String dataSourceName;
+	String dbName;
+	String dbType;
+	String schema;
+	Long fingerprint;
+	Set<MetaTable> tables = new LinkedHashSet<>();
+
+	public String getDataSourceName() {
+		return dataSourceName;
+	}
+
+	public void setDataSourceName(String dataSourceName) {
+		this.dataSourceName = dataSourceName;
+	}
+
+	public String getDbName() {
+		return dbName;
+	}
+
+	public void setDbName(String dbName) {
+		this.dbName = dbName;
+	}
+
+	public String getDbType() {
+		return dbType;
+	}
+
+	public void setDbType(String dbType) {
+		this.dbType = dbType;
+	}
+
+	public String getSchema() {
+		return schema;
+	}
+
+	public void setSchema(String schema) {
+		this.schema = schema;
+	}
+
+	public Long getFingerprint() {
+		return fingerprint;
+	}
+
+	public void setFingerprint(Long fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	public Set<MetaTable> getTables() {
+		return tables;
+	}
+
+	public void setTables(Set<MetaTable> tables) {
+		this.tables = tables;
+	}
+
+}
@@ -1,9 +1,14 @@
 package com.github.endless.activejdbc.core;
 
+import org.javalite.activejdbc.ColumnMetadata;
+
+import java.util.Map;
+
 public class MetaTable {
 	String idName;
 	String tableName;
 	String dbName;
+	Map<String, ColumnMetadata> columns;
 
 	public String getIdName() {
 		return idName;
@@ -29,5 +34,13 @@ public class MetaTable {
 		this.dbName = dbName;
 	}
 
+	public Map<String, ColumnMetadata> getColumns() {
+		return columns;
+	}
+
+	public void setColumns(Map<String, ColumnMetadata> columns) {
+		this.columns = columns;
+	}
+
 
 }
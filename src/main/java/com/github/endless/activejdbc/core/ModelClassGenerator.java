@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.github.endless.activejdbc.constant.Keys;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.LoaderClassPath;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 构建时根据表结构快照生成model类<br>
+ * 生成的class与运行时 {@link MemoryCompiler} 生成的字节码一致, 打包进jar后启动时直接加载, 不再逐表生成字节码<br>
+ * 快照不存在或表结构变化时, 运行时仍会为缺失或不一致的表动态生成model
+ * <pre>
+ * &lt;plugin&gt;
+ *     &lt;groupId&gt;org.codehaus.mojo&lt;/groupId&gt;
+ *     &lt;artifactId&gt;exec-maven-plugin&lt;/artifactId&gt;
+ *     &lt;executions&gt;
+ *         &lt;execution&gt;
+ *             &lt;phase&gt;process-classes&lt;/phase&gt;
+ *             &lt;goals&gt;&lt;goal&gt;java&lt;/goal&gt;&lt;/goals&gt;
+ *             &lt;configuration&gt;
+ *                 &lt;mainClass&gt;com.github.endless.activejdbc.core.ModelClassGenerator&lt;/mainClass&gt;
+ *                 &lt;arguments&gt;
+ *                     &lt;argument&gt;activejdbc-schema.snapshot&lt;/argument&gt;
+ *                     &lt;argument&gt;${project.build.outputDirectory}&lt;/argument&gt;
+ *                 &lt;/arguments&gt;
+ *             &lt;/configuration&gt;
+ *         &lt;/execution&gt;
+ *     &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ *
+ * @author Endless
+ */
+@Slf4j
+public class ModelClassGenerator {
+
+	/**
+	 * @param args [0] 表结构快照路径 [1] class输出目录
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			throw new IllegalArgumentException("usage: ModelClassGenerator <snapshot> <outputDirectory>");
+		}
+		generate(Paths.get(args[0]), Paths.get(args[1]));
+	}
+
+	/**
+	 * 为快照中的每一张表生成model类, 并在输出目录写入索引 {@link Keys#GENERATED_MODELS_RESOURCE}
+	 */
+	public static int generate(Path snapshot, Path outputDirectory) throws Exception {
+		Map<String, MetaCatalog> catalogs = SchemaSnapshot.read(snapshot);
+		if (catalogs.isEmpty()) {
+			throw new IllegalStateException("schema snapshot " + snapshot + " is missing or unreadable, start the application once with activejdbc.snapshot.enabled=true");
+		}
+		ClassPool assist = new ClassPool(true);
+		assist.appendClassPath(new LoaderClassPath(ClassUtils.getDefaultClassLoader()));
+		Properties index = new Properties();
+		for (MetaCatalog catalog : catalogs.values()) {
+			for (MetaTable metaTable : catalog.getTables()) {
+				String key = metaTable.getTableName().toLowerCase();
+				if (index.containsKey(key)) {
+					continue;
+				}
+				CtClass ctClass = MemoryCompiler.makeModelClass(metaTable, assist);
+				ctClass.writeFile(outputDirectory.toString());
+				index.setProperty(key, ctClass.getName());
+				ctClass.detach();
+			}
+		}
+		Path indexFile = outputDirectory.resolve(Keys.GENERATED_MODELS_RESOURCE);
+		Files.createDirectories(indexFile.getParent());
+		try (OutputStream out = Files.newOutputStream(indexFile)) {
+			index.store(out, "generated by " + ModelClassGenerator.class.getName());
+		} catch (IOException e) {
+			throw new IOException("failed to write " + indexFile, e);
+		}
+		log.info("generated {} model classes into {}", index.size(), outputDirectory);
+		return index.size();
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.lang.Nullable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一次表结构加载(generation)中所有动态model共用的类加载器<br>
+ * 刷新表结构时整体替换, 旧的加载器及其加载的model在不再被引用后可作为一个整体被卸载<br>
+ * 指标以弱引用持有加载器, generation不再有model使用时由 {@link #retire()} 移除
+ *
+ * @author Endless
+ */
+public class ModelClassLoader extends ByteArrayClassLoader {
+
+	private static final AtomicInteger GENERATIONS = new AtomicInteger();
+
+	private final int generation;
+	private final AtomicInteger classCount = new AtomicInteger();
+	private final AtomicLong byteCount = new AtomicLong();
+	private final long metaspaceBefore;
+	private volatile long metaspace;
+	private final List<Meter> meters = new ArrayList<>();
+
+	public ModelClassLoader(@Nullable ClassLoader parent) {
+		super(parent);
+		this.generation = GENERATIONS.incrementAndGet();
+		this.metaspaceBefore = metaspaceUsed();
+		String tag = String.valueOf(generation);
+		meters.add(Gauge.builder("activejdbc.models.generation.classes", this, ModelClassLoader::getClassCount)
+		                .tag("generation", tag).description("dynamic model classes defined in this generation").register(Metrics.globalRegistry));
+		meters.add(Gauge.builder("activejdbc.models.generation.bytecode", this, ModelClassLoader::getByteCount)
+		                .tag("generation", tag).baseUnit("bytes").description("bytecode size of this generation").register(Metrics.globalRegistry));
+		meters.add(Gauge.builder("activejdbc.models.generation.metaspace", this, ModelClassLoader::getMetaspace)
+		                .tag("generation", tag).baseUnit("bytes").description("metaspace growth while this generation was loaded, approximate")
+		                .register(Metrics.globalRegistry));
+	}
+
+	/**
+	 * 同名类已在本generation中定义时直接返回, 注册失败后重试不会重复定义
+	 */
+	@Override
+	public Class<?> loadClass(String name, byte[] bytes) {
+		Class<?> loaded = findLoadedClass(name);
+		if (loaded != null) {
+			return loaded;
+		}
+		Class<?> clazz = super.loadClass(name, bytes);
+		classCount.incrementAndGet();
+		byteCount.addAndGet(bytes.length);
+		return clazz;
+	}
+
+	/**
+	 * 本次加载完成 记录metaspace增量
+	 */
+	void complete() {
+		metaspace = Math.max(0, metaspaceUsed() - metaspaceBefore);
+	}
+
+	/**
+	 * generation退役 移除其指标
+	 */
+	void retire() {
+		meters.forEach(Metrics.globalRegistry::remove);
+		meters.clear();
+	}
+
+	public int getGeneration() {
+		return generation;
+	}
+
+	public int getClassCount() {
+		return classCount.get();
+	}
+
+	public long getByteCount() {
+		return byteCount.get();
+	}
+
+	public long getMetaspace() {
+		return metaspace;
+	}
+
+	private static long metaspaceUsed() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if ("Metaspace".equals(pool.getName())) {
+				return pool.getUsage().getUsed();
+			}
+		}
+		return 0;
+	}
+}
@@ -19,18 +19,41 @@
 
 package com.github.endless.activejdbc.core;
 
+import com.github.endless.activejdbc.configuration.ActiveJdbcProperties;
 import com.github.endless.activejdbc.constant.Keys;
+import com.github.endless.activejdbc.query.CountStrategy;
 import com.github.endless.activejdbc.query.PageQuery;
 import org.javalite.activejdbc.*;
 import org.javalite.activejdbc.cache.QueryCache;
 import org.javalite.activejdbc.logging.LogFilter;
 import org.javalite.common.Convert;
+import org.javalite.common.JsonHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 
+import javax.sql.DataSource;
 import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -55,17 +78,38 @@ public class Paginator<T extends Model> implements Serializable {
      */
     private static final long serialVersionUID = 6937455279762735175L;
     private static final Logger LOGGER = LoggerFactory.getLogger(Paginator.class);
+    private static final Pattern PLAN_ROWS_PATTERN = Pattern.compile("rows=(\\d+)");
+    /**
+     * capped 方式默认的统计上限
+     */
+    public static final long DEFAULT_COUNT_LIMIT = 10000;
     private final int pageSize;
     private final String query;
     private final MetaModel metaModel;
     private final boolean fullQuery;
     private final String countQueryFull;
+    /**
+     * 不含排序与分页的查询行, 用于 capped 计数与估算
+     */
+    private final String rowsQuery;
     private final Object[] params;
     private final boolean suppressCounts;
     private String orderBys;
     private int currentPageIndex;
-    private Long count = 0L;
+    /**
+     * 并行统计时由连接池线程写入
+     */
+    private volatile Long count;
     private Set<String> columns;
+    /**
+     * 游标分页: 不为null时按 (排序字段, 主键) 定位下一页, 空字符串表示第一页
+     */
+    private String cursor;
+    private String nextCursor;
+    private CountStrategy countStrategy = CountStrategy.EXACT;
+    private long countLimit = DEFAULT_COUNT_LIMIT;
+    private boolean concurrentCount;
+    private long countTimeout = ActiveJdbcProperties.current().getPagination().getCountTimeout();
 
 
     /**
@@ -128,6 +172,7 @@ public class Paginator<T extends Model> implements Serializable {
                 throw new IllegalArgumentException("SELECT query without FROM");
             }
             String from = query.substring(m.end());
+            this.rowsQuery = query;
             if (countQuery != null) {
                 this.countQueryFull = "SELECT " + countQuery + " FROM " + from;
             } else {
@@ -136,11 +181,13 @@ public class Paginator<T extends Model> implements Serializable {
         } else if ("*".equals(query)) {
             if (params.length == 0) {
                 this.countQueryFull = metaModel.getDialect().selectCount(tableName);
+                this.rowsQuery = "SELECT 1 FROM " + tableName;
             } else {
                 throw new IllegalArgumentException("cannot provide parameters with query: '*'");
             }
         } else {
             this.countQueryFull = metaModel.getDialect().selectCount(tableName, query);
+            this.rowsQuery = "SELECT 1 FROM " + tableName + " WHERE " + query;
         }
     }
 
@@ -176,6 +223,68 @@ public class Paginator<T extends Model> implements Serializable {
         this.columns = columns;
     }
 
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * 游标分页时下一页的游标, 在 {@link #apply(Class[])} 之后可用, 没有下一页时为null
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public CountStrategy getCountStrategy() {
+        return countStrategy;
+    }
+
+    /**
+     * {@link #apply(Class[])} 统计总数的方式, null 为精确统计
+     */
+    public void setCountStrategy(CountStrategy countStrategy) {
+        this.countStrategy = countStrategy == null ? CountStrategy.EXACT : countStrategy;
+    }
+
+    public long getCountLimit() {
+        return countLimit;
+    }
+
+    public void setCountLimit(long countLimit) {
+        if (countLimit < 1) {
+            throw new IllegalArgumentException("countLimit must be positive");
+        }
+        this.countLimit = countLimit;
+    }
+
+    public boolean isConcurrentCount() {
+        return concurrentCount;
+    }
+
+    /**
+     * {@link #apply(Class[])} 时是否在另一个链接上与分页查询并行统计总数, 处于事务中时仍顺序执行
+     */
+    public void setConcurrentCount(boolean concurrentCount) {
+        this.concurrentCount = concurrentCount;
+    }
+
+    public long getCountTimeout() {
+        return countTimeout;
+    }
+
+    /**
+     * 并行统计总数的超时时间(毫秒), 超时后取消统计, 返回结果不含总数
+     */
+    public void setCountTimeout(long countTimeout) {
+        if (countTimeout < 1) {
+            throw new IllegalArgumentException("countTimeout must be positive");
+        }
+        this.countTimeout = countTimeout;
+    }
+
     /**
      * Use to set order by(s). Example: <code>"category, created_at desc"</code>
      *
@@ -195,11 +304,22 @@ public class Paginator<T extends Model> implements Serializable {
      * @return list of records that match a query make up a "page".
      */
     public LazyList<T> getPage(int pageNumber) {
+        return getPage(pageNumber, pageSize);
+    }
+
+    /**
+     * @param limit 本页读取的行数, 多取一条时用于判断是否存在下一页
+     */
+    private LazyList<T> getPage(int pageNumber, int limit) {
         if (pageNumber < 1) {
             throw new IllegalArgumentException("minimum page index == 1");
         }
+        if (cursor != null) {
+            currentPageIndex = pageNumber;
+            return getKeysetPage(limit);
+        }
         try {
-            LazyList<T> list = find(query, params).limit(pageSize).offset((pageNumber - 1) * pageSize);
+            LazyList<T> list = find(query, params).limit(limit).offset((pageNumber - 1) * pageSize);
             if (StringUtils.hasText(orderBys)) {
                 list.orderBy(orderBys);
             }
@@ -280,23 +400,22 @@ public class Paginator<T extends Model> implements Serializable {
      * @return total count of records based on provided criteria
      */
     public Long getCount() {
-        if (count == 0L || !suppressCounts) {
+        Long current = count;
+        if (current == null || !suppressCounts) {
             if (metaModel.cached()) {
-                count = (Long) QueryCache.instance().getItem(metaModel.getTableName(), countQueryFull, params);
-                if (count == null || count == 0) {
-                    count = doCount();
-                    QueryCache.instance().addItem(metaModel.getTableName(), countQueryFull, params, count);
+                current = (Long) QueryCache.instance().getItem(metaModel.getTableName(), countQueryFull, params);
+                if (current == null) {
+                    current = doCount();
+                    QueryCache.instance().addItem(metaModel.getTableName(), countQueryFull, params, current);
                 } else {
                     LogFilter.logQuery(LOGGER, countQueryFull, params, System.currentTimeMillis(), true);
                 }
             } else {
-                count = doCount();
+                current = CountCache.count(metaModel.getTableName(), countQueryFull, params, this::doCount);
             }
-            return count;
-
-        } else {
-            return count;
+            count = current;
         }
+        return current;
     }
 
     @SuppressWarnings("resource")
@@ -304,6 +423,52 @@ public class Paginator<T extends Model> implements Serializable {
         return Convert.toLong(new DB(metaModel.getDbName()).firstCell(countQueryFull, params));
     }
 
+    /**
+     * 最多统计 countLimit + 1 行, 超过上限时返回 countLimit + 1
+     */
+    @SuppressWarnings("resource")
+    private Long cappedCount() {
+        String limited = metaModel.getDialect().formSelect(null, null, rowsQuery, Collections.emptyList(), countLimit + 1, -1);
+        return Convert.toLong(new DB(metaModel.getDbName()).firstCell("SELECT COUNT(*) FROM (" + limited + ") capped_count", params));
+    }
+
+    /**
+     * 从执行计划中读取估算行数, 目前支持 MySQL/MariaDB 与 PostgreSQL, 其它数据库或读取失败时返回null
+     */
+    @SuppressWarnings({"resource", "unchecked"})
+    private Long estimatedCount() {
+        String dbType = String.valueOf(metaModel.getDbType()).toLowerCase();
+        boolean mysql = dbType.contains("mysql") || dbType.contains("mariadb");
+        if (!mysql && !dbType.contains("postgres")) {
+            return null;
+        }
+        try {
+            List<Map> plan = new DB(metaModel.getDbName()).findAll("EXPLAIN " + rowsQuery, params);
+            if (plan.isEmpty()) {
+                return null;
+            }
+            if (mysql) {
+                Long rows = Convert.toLong(planValue(plan.get(0), "rows"));
+                Double filtered = Convert.toDouble(planValue(plan.get(0), "filtered"));
+                return rows == null ? null : filtered == null ? rows : Math.round(rows * filtered / 100);
+            }
+            Matcher m = PLAN_ROWS_PATTERN.matcher(String.valueOf(plan.get(0).values().iterator().next()));
+            return m.find() ? Long.valueOf(m.group(1)) : null;
+        } catch (DBException e) {
+            LOGGER.warn("failed to estimate count, fall back to exact count: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static Object planValue(Map<String, Object> row, String column) {
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            if (column.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
     public int getPageSize() {
         return pageSize;
     }
@@ -318,11 +483,110 @@ public class Paginator<T extends Model> implements Serializable {
 
     @SuppressWarnings("unchecked")
     public PageQuery<Map<String, Object>> apply(Class<? extends Model>... include) {
-        LazyList<T> rows = getPage();
-        if (include.length > 0) {
-            rows.include(include);
+        CountTask countTask = concurrentCount && countStrategy != CountStrategy.NONE && !inTransaction() ? new CountTask() : null;
+        boolean lookahead = cursor != null || countStrategy != CountStrategy.EXACT || countTask != null;
+        // 没有include与游标时直接由结果集写出json, 不创建 Model 与 Map
+        boolean direct = include.length == 0 && cursor == null && JsonRows.supported(metaModel);
+        LazyList<T> rows;
+        List<Map<String, Object>> maps;
+        try {
+            rows = getPage(currentPageIndex, lookahead ? pageSize + 1 : pageSize);
+            if (include.length > 0) {
+                rows.include(include);
+            }
+            maps = direct ? rows.toJsonRows(pageSize) : rows.toMaps();
+        } catch (RuntimeException | Error e) {
+            if (countTask != null) {
+                countTask.cancel();
+            }
+            throw e;
+        }
+        boolean more = false;
+        if (lookahead) {
+            nextCursor = null;
+            if (direct) {
+                more = ((JsonRows) maps).hasMore();
+            } else if (maps.size() > pageSize) {
+                maps.remove(pageSize);
+                more = true;
+                if (cursor != null) {
+                    nextCursor = Keyset.of(metaModel, orderBys).next(rows.get(pageSize - 1));
+                }
+            }
+        }
+        Total total;
+        if (lookahead && cursor == null && !more && (!maps.isEmpty() || currentPageIndex == 1)) {
+            // 已读到最后一页, 总数可直接算出
+            if (countTask != null) {
+                countTask.cancel();
+            }
+            total = new Total((long) (currentPageIndex - 1) * pageSize + maps.size(), CountStrategy.EXACT);
+        } else if (countTask != null) {
+            total = countTask.await();
+        } else {
+            total = count();
         }
-        return new PageQuery<>(orderBys, getPageSize(), getCurrentPage(), getCount(), rowsFilter(rows.toMaps()));
+        if (!lookahead) {
+            more = (long) currentPageIndex * pageSize < total.value;
+        }
+        return new PageQuery<>(orderBys, getPageSize(), getCurrentPage(), total.value, direct ? maps : rowsFilter(maps), nextCursor, total.strategy, more);
+    }
+
+    /**
+     * 按统计方式计算总数
+     */
+    private Total count() {
+        switch (countStrategy) {
+            case NONE:
+                return new Total(null, CountStrategy.NONE);
+            case CAPPED:
+                long capped = cappedCount();
+                return capped > countLimit ? new Total(countLimit, CountStrategy.CAPPED) : new Total(capped, CountStrategy.EXACT);
+            case ESTIMATED:
+                Long estimated = estimatedCount();
+                return estimated != null ? new Total(estimated, CountStrategy.ESTIMATED) : new Total(getCount(), CountStrategy.EXACT);
+            default:
+                return new Total(getCount(), CountStrategy.EXACT);
+        }
+    }
+
+    /**
+     * 当前线程是否处于事务中, 事务中未提交的修改对另一个链接不可见, 此时不能并行统计
+     */
+    @SuppressWarnings("resource")
+    private boolean inTransaction() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return true;
+        }
+        DB db = new DB(metaModel.getDbName());
+        try {
+            return db.hasConnection() && !db.connection().getAutoCommit();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 游标分页: 以 (排序字段, 主键) 定位, 多取一条判断是否存在下一页, 不使用offset
+     */
+    private LazyList<T> getKeysetPage(int limit) {
+        if (fullQuery) {
+            throw new IllegalArgumentException("keyset pagination is not supported with a full query");
+        }
+        Keyset keyset = Keyset.of(metaModel, orderBys);
+        keyset.requireNotNull(metaModel);
+        Object[] values = keyset.decode(cursor);
+        LazyList<T> list;
+        if (values == null) {
+            list = "*".equals(query) ? findAll() : find(query, params);
+        } else {
+            String condition = keyset.condition(values);
+            Object[] keysetParams = keyset.params(values);
+            Object[] allParams = Arrays.copyOf(params, params.length + keysetParams.length);
+            System.arraycopy(keysetParams, 0, allParams, params.length, keysetParams.length);
+            list = new LazyModelList<>("*".equals(query) ? condition : "(" + query + ") AND " + condition, metaModel, columns, allParams);
+        }
+        return list.orderBy(keyset.orderBy()).limit(limit);
     }
 
     /**
@@ -377,6 +641,293 @@ public class Paginator<T extends Model> implements Serializable {
         }
     }
 
+    private static final class Total {
+        private final Long value;
+        private final CountStrategy strategy;
+
+        private Total(Long value, CountStrategy strategy) {
+            this.value = value;
+            this.strategy = strategy;
+        }
+    }
+
+    /**
+     * 在另一个池化链接上统计总数, 沿用当前线程的数据源与只读设置<br>
+     * 记录执行中的语句, 取消或超时时调用 {@link Statement#cancel()} 终止数据库端的查询
+     */
+    private final class CountTask {
+        private final Object dataSourceKey = ApplicationContextHelper.getDataSourceKey();
+        private final boolean readOnly = ApplicationContextHelper.isReadOnly();
+        private final CompletableFuture<Total> future;
+        private volatile Statement statement;
+        private volatile boolean cancelled;
+
+        private CountTask() {
+            this.future = ContextHelper.asyncApply(this::call);
+        }
+
+        @SuppressWarnings("resource")
+        private Total call() {
+            if (cancelled) {
+                return null;
+            }
+            DB db = new DB(metaModel.getDbName());
+            if (db.hasConnection()) {
+                return count();
+            }
+            if (dataSourceKey instanceof String) {
+                ApplicationContextHelper.setDataSourceKey((String) dataSourceKey);
+            }
+            ApplicationContextHelper.setReadOnly(readOnly);
+            DataSource dataSource = ContextHelper.getDataSource(metaModel.getDbName());
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            try {
+                db.attach(track(connection));
+                return count();
+            } finally {
+                if (db.hasConnection()) {
+                    db.detach();
+                }
+                DataSourceUtils.releaseConnection(connection, dataSource);
+                ApplicationContextHelper.clearDataSourceKey();
+                ApplicationContextHelper.setReadOnly(false);
+            }
+        }
+
+        private Connection track(Connection connection) {
+            int queryTimeout = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(countTimeout + 999));
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                Object result;
+                try {
+                    result = method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (result instanceof Statement) {
+                    Statement created = (Statement) result;
+                    created.setQueryTimeout(queryTimeout);
+                    statement = created;
+                    if (cancelled) {
+                        created.cancel();
+                    }
+                }
+                return result;
+            });
+        }
+
+        /**
+         * 等待统计结果, 超时后取消统计并返回不含总数的结果
+         */
+        private Total await() {
+            try {
+                return future.get(countTimeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                cancel();
+                LOGGER.warn("count query exceeded {} ms and was cancelled: {}", countTimeout, countQueryFull);
+                return new Total(null, CountStrategy.NONE);
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new InternalException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new DBException(cause);
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            future.cancel(true);
+            Statement current = statement;
+            if (current != null) {
+                try {
+                    current.cancel();
+                } catch (SQLException e) {
+                    LOGGER.debug("failed to cancel count query: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 游标分页的排序键: 最多一个排序字段, 以主键作为同值时的次序<br>
+     * 排序与定位条件都可由 (排序字段, 主键) 上的索引满足; 排序字段必须为 NOT NULL, 各数据库NULL的次序不一致且无法按索引定位
+     */
+    static final class Keyset {
+        /**
+         * 排序字段是否为 NOT NULL, 表结构刷新后字段元数据被替换, 缓存随之失效
+         */
+        private static final Map<ColumnMetadata, Boolean> NOT_NULL = Collections.synchronizedMap(new WeakHashMap<>());
+
+        private final String column;
+        private final String idName;
+        private final boolean desc;
+        private final ColumnMetadata columnMetadata;
+        private final ColumnMetadata idMetadata;
+
+        private Keyset(MetaModel metaModel, String column, boolean desc) {
+            Map<String, ColumnMetadata> metadata = metaModel.getColumnMetadata();
+            this.column = column;
+            this.idName = metaModel.getIdName();
+            this.desc = desc;
+            this.columnMetadata = column == null ? null : metadata.get(column);
+            this.idMetadata = metadata.get(idName);
+        }
+
+        static Keyset of(MetaModel metaModel, String orderBys) {
+            String idName = metaModel.getIdName();
+            if (!StringUtils.hasText(orderBys)) {
+                return new Keyset(metaModel, null, false);
+            }
+            String column = null;
+            boolean desc = false;
+            for (String orderBy : orderBys.split(",")) {
+                String[] parts = orderBy.trim().split("\\s+");
+                if (parts[0].isEmpty()) {
+                    continue;
+                }
+                boolean partDesc = parts.length > 1 && "desc".equalsIgnoreCase(parts[1]);
+                if (!metaModel.getColumnMetadata().containsKey(parts[0])) {
+                    throw new IllegalArgumentException("unknown sort column: " + parts[0]);
+                }
+                if (parts[0].equalsIgnoreCase(idName)) {
+                    if (column == null) {
+                        desc = partDesc;
+                    }
+                    break;
+                }
+                if (column != null) {
+                    throw new IllegalArgumentException("keyset pagination supports one sort column besides the primary key: " + orderBys);
+                }
+                column = parts[0];
+                desc = partDesc;
+            }
+            return new Keyset(metaModel, column, desc);
+        }
+
+        String orderBy() {
+            String direction = desc ? " DESC" : " ASC";
+            return column == null ? idName + direction : column + direction + ", " + idName + direction;
+        }
+
+        /**
+         * (排序字段, 主键) 大于(降序时小于)游标, 展开为各数据库通用的写法; 前置的 &gt;= 条件使数据库从索引中的游标位置开始扫描
+         */
+        String condition(Object[] values) {
+            String op = desc ? " < ?" : " > ?";
+            if (column == null) {
+                return idName + op;
+            }
+            return "(" + column + (desc ? " <= ?" : " >= ?") + " AND (" + column + op + " OR (" + column + " = ? AND " + idName + op + ")))";
+        }
+
+        Object[] params(Object[] values) {
+            if (column == null) {
+                return new Object[]{values[1]};
+            }
+            return new Object[]{values[0], values[0], values[0], values[1]};
+        }
+
+        /**
+         * 排序字段可为NULL时拒绝游标分页
+         */
+        void requireNotNull(MetaModel metaModel) {
+            if (column == null) {
+                return;
+            }
+            Boolean notNull = NOT_NULL.get(columnMetadata);
+            if (notNull == null) {
+                String sql = "SELECT " + column + " FROM " + metaModel.getTableName() + " WHERE 1 = 0";
+                try (Statement statement = new DB(metaModel.getDbName()).connection().createStatement();
+                     ResultSet rs = statement.executeQuery(sql)) {
+                    notNull = rs.getMetaData().isNullable(1) == ResultSetMetaData.columnNoNulls;
+                } catch (SQLException e) {
+                    throw new DBException(sql, null, e);
+                }
+                NOT_NULL.put(columnMetadata, notNull);
+            }
+            if (!notNull) {
+                throw new IllegalArgumentException("keyset pagination requires a NOT NULL sort column: " + column);
+            }
+        }
+
+        /**
+         * 游标 base64url(json[排序字段值, 主键值]), 时间与小数以字符串保存
+         */
+        String next(Model last) {
+            Object[] values = {column == null ? null : encode(last.get(column)), encode(last.getId())};
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(JsonHelper.toJsonString(values).getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @return 空游标(第一页)返回null, 值按字段类型还原
+         */
+        Object[] decode(String cursor) {
+            if (cursor.isEmpty()) {
+                return null;
+            }
+            try {
+                List<?> values = JsonHelper.toList(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+                if (values.size() != 2 || values.get(1) == null || column == null != (values.get(0) == null)) {
+                    throw new IllegalArgumentException("invalid cursor: " + cursor);
+                }
+                return new Object[]{decode(values.get(0), columnMetadata), decode(values.get(1), idMetadata)};
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("invalid cursor: " + cursor, e);
+            }
+        }
+
+        /**
+         * JSON只保留数字、字符串与布尔, 时间按JDBC转义格式、小数按原始精度转为字符串
+         */
+        private static Object encode(Object value) {
+            if (value == null || value instanceof String || value instanceof Boolean) {
+                return value;
+            }
+            if (value instanceof Timestamp || value instanceof java.sql.Date || value instanceof Time) {
+                return value.toString();
+            }
+            if (value instanceof Date) {
+                return new Timestamp(((Date) value).getTime()).toString();
+            }
+            if (value instanceof LocalDateTime) {
+                return Timestamp.valueOf((LocalDateTime) value).toString();
+            }
+            if (value instanceof LocalDate) {
+                return java.sql.Date.valueOf((LocalDate) value).toString();
+            }
+            if (value instanceof BigDecimal) {
+                return ((BigDecimal) value).toPlainString();
+            }
+            return value instanceof Number ? value : value.toString();
+        }
+
+        private static Object decode(Object value, ColumnMetadata metadata) {
+            if (value == null || metadata == null || metadata.getTypeName() == null) {
+                return value;
+            }
+            String type = metadata.getTypeName().toUpperCase(Locale.ROOT);
+            String text = value.toString();
+            if (type.contains("TIMESTAMP") || type.contains("DATETIME")) {
+                return Timestamp.valueOf(text);
+            }
+            if (type.equals("DATE")) {
+                // Oracle的DATE含时间部分
+                return text.length() > 10 ? Timestamp.valueOf(text) : java.sql.Date.valueOf(text);
+            }
+            if (type.equals("TIME")) {
+                return Time.valueOf(text);
+            }
+            if (type.contains("DECIMAL") || type.contains("NUMERIC") || type.startsWith("NUMBER") || type.equals("MONEY")) {
+                return new BigDecimal(text);
+            }
+            if (type.equals("UUID")) {
+                return UUID.fromString(text);
+            }
+            return value;
+        }
+    }
+
     /**
      * Provides a builder pattern to create new instances of paginator.
      */
@@ -390,6 +941,10 @@ public class Paginator<T extends Model> implements Serializable {
         private int currentPageIndex = 1;
         private boolean skipCheck;
         private String orderBys;
+        private String cursor;
+        private CountStrategy countStrategy;
+        private long countLimit = DEFAULT_COUNT_LIMIT;
+        private boolean concurrentCount = ActiveJdbcProperties.current().getPagination().isConcurrentCount();
 
         private Set<String> columns;
 
@@ -404,8 +959,12 @@ public class Paginator<T extends Model> implements Serializable {
             return this;
         }
 
+        /**
+         * 返回字段, 为空时查询全部字段; 非空时自动补上主键, 游标分页时补上排序字段
+         */
         public PaginatorBuilder<T> columns(Collection columns) {
-            this.columns = new HashSet(columns);
+            this.columns = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            this.columns.addAll(columns);
             return this;
         }
 
@@ -481,6 +1040,40 @@ public class Paginator<T extends Model> implements Serializable {
             return this;
         }
 
+        /**
+         * 游标分页 传入上一页返回的游标, 第一页传空字符串; null 使用页码分页
+         */
+        public PaginatorBuilder<T> cursor(String cursor) {
+            this.cursor = cursor;
+            return this;
+        }
+
+        /**
+         * 总数统计方式, 默认精确统计
+         *
+         * @see CountStrategy
+         */
+        public PaginatorBuilder<T> countStrategy(CountStrategy countStrategy) {
+            this.countStrategy = countStrategy;
+            return this;
+        }
+
+        /**
+         * {@link CountStrategy#CAPPED} 方式的统计上限, null 使用默认值 {@link #DEFAULT_COUNT_LIMIT}
+         */
+        public PaginatorBuilder<T> countLimit(Long countLimit) {
+            this.countLimit = countLimit == null ? DEFAULT_COUNT_LIMIT : countLimit;
+            return this;
+        }
+
+        /**
+         * 是否与分页查询并行统计总数, 默认取配置 activejdbc.pagination.concurrent-count
+         */
+        public PaginatorBuilder<T> concurrentCount(boolean concurrentCount) {
+            this.concurrentCount = concurrentCount;
+            return this;
+        }
+
         /**
          * Terminal method to create an instance of Paginator.
          *
@@ -490,7 +1083,21 @@ public class Paginator<T extends Model> implements Serializable {
             Paginator<T> paginator = new Paginator<>(modelClass, pageSize, suppressCounts, query, countQuery, params);
             paginator.setCurrentPageIndex(currentPageIndex, skipCheck);
             paginator.orderBy(orderBys);
+            if (columns != null && !columns.isEmpty()) {
+                MetaModel metaModel = ModelDelegate.metaModelOf(modelClass);
+                columns.add(metaModel.getIdName());
+                if (cursor != null) {
+                    Keyset keyset = Keyset.of(metaModel, orderBys);
+                    if (keyset.column != null) {
+                        columns.add(keyset.column);
+                    }
+                }
+            }
             paginator.setColumns(columns);
+            paginator.setCursor(cursor);
+            paginator.setCountStrategy(countStrategy);
+            paginator.setCountLimit(countLimit);
+            paginator.setConcurrentCount(concurrentCount);
             return paginator;
         }
     }
@@ -15,7 +15,7 @@ public class Partition<T> extends AbstractList<List<T>> {
 	@Override
 	public List<T> get(int index) {
 		int listSize = size();
-		if (index < 0 || index >= size) {
+		if (index < 0 || index >= listSize) {
 			throw new IndexOutOfBoundsException();
 		}
 		int start = index * size;
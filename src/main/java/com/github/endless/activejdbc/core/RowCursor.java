@@ -0,0 +1,205 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.github.endless.activejdbc.configuration.ActiveJdbcProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.javalite.activejdbc.DB;
+import org.javalite.activejdbc.DBException;
+import org.javalite.activejdbc.MetaModel;
+import org.javalite.activejdbc.Model;
+
+import java.sql.*;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 只进游标 逐行读取查询结果, 不在内存中保留已读过的行<br>
+ * 使用当前线程已打开的链接, 必须在链接释放前关闭; MySQL 使用驱动的逐行流式读取,
+ * PostgreSQL 需要关闭自动提交才会按fetchSize分批读取, 关闭游标时恢复
+ *
+ * @author Endless
+ */
+@Slf4j
+public final class RowCursor implements AutoCloseable {
+
+	private final Connection connection;
+	private final PreparedStatement statement;
+	private final ResultSet resultSet;
+	private final String[] labels;
+	private final boolean restoreAutoCommit;
+	private boolean closed;
+
+	private RowCursor(Connection connection, PreparedStatement statement, ResultSet resultSet, boolean restoreAutoCommit) throws SQLException {
+		this.connection = connection;
+		this.statement = statement;
+		this.resultSet = resultSet;
+		this.restoreAutoCommit = restoreAutoCommit;
+		ResultSetMetaData metaData = resultSet.getMetaData();
+		this.labels = new String[metaData.getColumnCount()];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = metaData.getColumnLabel(i + 1).toLowerCase(Locale.ROOT);
+		}
+	}
+
+	/**
+	 * 以配置 activejdbc.streaming.fetch-size 打开游标
+	 */
+	public static RowCursor open(MetaModel metaModel, String sql, Object... params) {
+		return open(metaModel, ActiveJdbcProperties.current().getStreaming().getFetchSize(), sql, params);
+	}
+
+	@SuppressWarnings("resource")
+	public static RowCursor open(MetaModel metaModel, int fetchSize, String sql, Object... params) {
+		Connection connection = new DB(metaModel.getDbName()).connection();
+		String dbType = String.valueOf(metaModel.getDbType()).toLowerCase(Locale.ROOT);
+		boolean restoreAutoCommit = false;
+		PreparedStatement statement = null;
+		try {
+			if (dbType.contains("postgres") && connection.getAutoCommit()) {
+				connection.setAutoCommit(false);
+				restoreAutoCommit = true;
+			}
+			// 游标独占语句并修改fetchSize, 不经过链接级别的语句缓存
+			statement = StatementCache.uncached(connection).prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			statement.setFetchSize(dbType.contains("mysql") || dbType.contains("mariadb") ? Integer.MIN_VALUE : Math.max(1, fetchSize));
+			for (int i = 0; i < params.length; i++) {
+				statement.setObject(i + 1, params[i]);
+			}
+			return new RowCursor(connection, statement, statement.executeQuery(), restoreAutoCommit);
+		} catch (SQLException e) {
+			close(statement);
+			if (restoreAutoCommit) {
+				restore(connection);
+			}
+			throw new DBException(sql, params, e);
+		}
+	}
+
+	/**
+	 * 字段名 小写, 与 Model.toMap 一致
+	 */
+	public String[] getLabels() {
+		return labels;
+	}
+
+	public boolean next() {
+		if (closed) {
+			return false;
+		}
+		try {
+			return resultSet.next();
+		} catch (SQLException e) {
+			throw new DBException(e);
+		}
+	}
+
+	/**
+	 * 当前行第 index 个字段的值 从0开始
+	 */
+	public Object get(int index) {
+		try {
+			return resultSet.getObject(index + 1);
+		} catch (SQLException e) {
+			throw new DBException(e);
+		}
+	}
+
+	/**
+	 * 当前行转为map 每行新建, 不被游标持有
+	 */
+	public Map<String, Object> toMap() {
+		Map<String, Object> row = new LinkedHashMap<>(labels.length * 2);
+		for (int i = 0; i < labels.length; i++) {
+			row.put(labels[i], get(i));
+		}
+		return row;
+	}
+
+	/**
+	 * 转为逐行读取的model流 关闭流或读完最后一行时关闭游标
+	 */
+	public <T extends Model> Stream<T> models(MetaModel metaModel, Class<T> modelClass) {
+		Iterator<T> iterator = new Iterator<T>() {
+			private Boolean pending;
+
+			@Override
+			public boolean hasNext() {
+				if (pending == null) {
+					pending = RowCursor.this.next();
+					if (!pending) {
+						close();
+					}
+				}
+				return pending;
+			}
+
+			@Override
+			public T next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				T model = LazyList.instance(toMap(), metaModel, modelClass);
+				pending = null;
+				return model;
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			resultSet.close();
+		} catch (SQLException e) {
+			log.debug("failed to close result set: {}", e.getMessage());
+		}
+		close(statement);
+		if (restoreAutoCommit) {
+			restore(connection);
+		}
+	}
+
+	private static void close(Statement statement) {
+		if (statement != null) {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				log.debug("failed to close statement: {}", e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * 游标只读, 结束只读事务后恢复自动提交
+	 */
+	private static void restore(Connection connection) {
+		try {
+			connection.rollback();
+			connection.setAutoCommit(true);
+		} catch (SQLException e) {
+			log.warn("failed to restore auto-commit: {}", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.endless.activejdbc.query.ExportFormat;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 将游标中的行逐行写出为 ndjson 或 csv, 每写出 fetchSize 行刷新一次输出流, 内存占用与结果集大小无关
+ *
+ * @author Endless
+ */
+public final class RowExporter {
+
+	private RowExporter() {
+	}
+
+	/**
+	 * @return 写出的行数
+	 */
+	public static long write(RowCursor cursor, ExportFormat format, OutputStream out, int flushSize) throws IOException {
+		return format == ExportFormat.CSV ? writeCsv(cursor, out, flushSize) : writeNdjson(cursor, out, flushSize);
+	}
+
+	private static long writeNdjson(RowCursor cursor, OutputStream out, int flushSize) throws IOException {
+		ObjectMapper objectMapper = JsonRows.objectMapper();
+		String[] labels = cursor.getLabels();
+		long rows = 0;
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			while (cursor.next()) {
+				generator.writeStartObject();
+				for (int i = 0; i < labels.length; i++) {
+					generator.writeFieldName(labels[i]);
+					JsonRows.writeValue(generator, cursor.get(i));
+				}
+				generator.writeEndObject();
+				generator.writeRaw('\n');
+				if (++rows % flushSize == 0) {
+					generator.flush();
+				}
+			}
+		}
+		return rows;
+	}
+
+	private static long writeCsv(RowCursor cursor, OutputStream out, int flushSize) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		String[] labels = cursor.getLabels();
+		for (int i = 0; i < labels.length; i++) {
+			if (i > 0) {
+				writer.write(',');
+			}
+			writeCsvValue(writer, labels[i]);
+		}
+		writer.write("\r\n");
+		long rows = 0;
+		while (cursor.next()) {
+			for (int i = 0; i < labels.length; i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				writeCsvValue(writer, cursor.get(i));
+			}
+			writer.write("\r\n");
+			if (++rows % flushSize == 0) {
+				writer.flush();
+			}
+		}
+		writer.flush();
+		return rows;
+	}
+
+	/**
+	 * RFC 4180 含逗号、引号或换行时加引号, 引号加倍; 二进制写为base64
+	 */
+	private static void writeCsvValue(Writer writer, Object value) throws IOException {
+		value = JsonRows.readLob(value);
+		if (value == null) {
+			return;
+		}
+		String text = value instanceof byte[] ? Base64.getEncoder().encodeToString((byte[]) value) : value.toString();
+		boolean quote = false;
+		for (int i = 0; i < text.length() && !quote; i++) {
+			char c = text.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			writer.write(text);
+			return;
+		}
+		writer.write('"');
+		writer.write(text.replace("\"", "\"\""));
+		writer.write('"');
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 增量刷新表结构的结果
+ *
+ * @author Endless
+ */
+public class SchemaChanges {
+	final Set<String> added = new TreeSet<>();
+	final Set<String> changed = new TreeSet<>();
+	final Set<String> removed = new TreeSet<>();
+
+	public Set<String> getAdded() {
+		return added;
+	}
+
+	public Set<String> getChanged() {
+		return changed;
+	}
+
+	public Set<String> getRemoved() {
+		return removed;
+	}
+
+	public boolean isEmpty() {
+		return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "SchemaChanges [added=" + added + ", changed=" + changed + ", removed=" + removed + "]";
+	}
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.github.endless.activejdbc.configuration.ActiveJdbcProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.javalite.activejdbc.ColumnMetadata;
+import org.javalite.activejdbc.DBException;
+import org.javalite.activejdbc.InitException;
+import org.javalite.common.CaseInsensitiveMap;
+import org.javalite.common.Collections;
+import org.javalite.common.Convert;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import static com.github.endless.activejdbc.query.Helper.convertList;
+
+/**
+ * 启动时并行扫描所有数据源的表结构<br>
+ * 优先使用 information_schema 一次查出整库的主键与字段, 不支持时退回到按表调用 DatabaseMetaData<br>
+ * 线程池有界, 每个任务独占一个数据库链接
+ *
+ * @author Endless
+ */
+@Slf4j
+public class SchemaIntrospector {
+
+	/**
+	 * 与 DatabaseMetaData.getPrimaryKeys 一致按列名排序, 联合主键时取第一列
+	 */
+	private static final String SQL_PRIMARY_KEYS = "SELECT k.TABLE_NAME, k.COLUMN_NAME FROM information_schema.TABLE_CONSTRAINTS t "
+			+ "JOIN information_schema.KEY_COLUMN_USAGE k ON t.CONSTRAINT_NAME = k.CONSTRAINT_NAME "
+			+ "AND t.TABLE_SCHEMA = k.TABLE_SCHEMA AND t.TABLE_NAME = k.TABLE_NAME "
+			+ "WHERE t.CONSTRAINT_TYPE = 'PRIMARY KEY' AND t.TABLE_SCHEMA = ? ORDER BY k.TABLE_NAME, k.COLUMN_NAME";
+
+	private static final String SQL_COLUMNS = "SELECT TABLE_NAME, COLUMN_NAME, %s, CHARACTER_MAXIMUM_LENGTH, NUMERIC_PRECISION "
+			+ "FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = ? ORDER BY TABLE_NAME, ORDINAL_POSITION";
+
+	/**
+	 * 与 DatabaseMetaData.getColumns 的 TYPE_NAME 一致的类型名, 两种扫描方式得到相同的 ColumnMetadata<br>
+	 * MySQL/MariaDB 为大写类型名并带 UNSIGNED, PostgreSQL 为 udt_name(int4、varchar、timestamptz...), H2 为 TYPE_NAME
+	 */
+	private static final String TYPE_MYSQL = "CONCAT(UPPER(DATA_TYPE), CASE WHEN COLUMN_TYPE LIKE '%unsigned%' THEN ' UNSIGNED' ELSE '' END)";
+	private static final String TYPE_POSTGRESQL = "udt_name";
+	private static final String TYPE_H2 = "TYPE_NAME";
+	private static final String TYPE_DEFAULT = "DATA_TYPE";
+
+	/**
+	 * 扫描所有数据源, 返回顺序与 dataSources 一致
+	 */
+	public static List<MetaCatalog> introspect(Map<String, DataSource> dataSources) {
+		ActiveJdbcProperties.Introspection config = ActiveJdbcProperties.current().getIntrospection();
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("activejdbc-introspect-");
+		threadFactory.setDaemon(true);
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, config.getThreads()), threadFactory);
+		long before = System.currentTimeMillis();
+		try {
+			List<Future<CatalogScan>> scans = new ArrayList<>();
+			for (Map.Entry<String, DataSource> dataSource : dataSources.entrySet()) {
+				scans.add(pool.submit(() -> scanCatalog(dataSource.getKey(), dataSource.getValue(), config.isBulk())));
+			}
+			List<CatalogScan> results = await(scans);
+			Map<CatalogScan, List<Future<List<MetaTable>>>> batches = new LinkedHashMap<>();
+			for (CatalogScan scan : results) {
+				if (!scan.pendingTables.isEmpty()) {
+					List<Future<List<MetaTable>>> futures = new ArrayList<>();
+					for (List<String> batch : new Partition<>(scan.pendingTables, Math.max(1, config.getBatchSize()))) {
+						futures.add(pool.submit(() -> scanTables(scan.dataSource, scan.catalog, batch)));
+					}
+					batches.put(scan, futures);
+				}
+			}
+			for (Map.Entry<CatalogScan, List<Future<List<MetaTable>>>> batch : batches.entrySet()) {
+				await(batch.getValue()).forEach(batch.getKey().catalog.getTables()::addAll);
+			}
+			List<MetaCatalog> catalogs = new ArrayList<>();
+			for (CatalogScan scan : results) {
+				log.info("introspected dataSource {} > {} tables", scan.catalog.getDataSourceName(), scan.catalog.getTables().size());
+				catalogs.add(scan.catalog);
+			}
+			log.info("introspection took: {} milliseconds", System.currentTimeMillis() - before);
+			return catalogs;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * 读取数据源基本信息, 并尝试一次查出整库表结构; 失败时返回待逐表扫描的表名
+	 */
+	private static CatalogScan scanCatalog(String dataSourceName, DataSource dataSource, boolean bulk) throws SQLException {
+		Connection connection = DataSourceUtils.doGetConnection(dataSource);
+		if (connection == null) {
+			throw new DBException("Failed to retrieve metadata from DB, connection: '" + dataSourceName + "' is not available");
+		}
+		try {
+			DatabaseMetaData databaseMetaData = connection.getMetaData();
+			CatalogScan scan = new CatalogScan(dataSource);
+			scan.catalog.setDataSourceName(dataSourceName);
+			scan.catalog.setDbName(connection.getCatalog());
+			scan.catalog.setDbType(databaseMetaData.getDatabaseProductName());
+			scan.catalog.setSchema(getConnectionSchema(connection));
+			log.info("lookup dataSource :{} ", dataSourceName);
+			if (bulk) {
+				try {
+					scan.catalog.getTables().addAll(bulkTables(connection, scan.catalog));
+					return scan;
+				} catch (SQLException e) {
+					log.warn("information_schema is not available for {}, fall back to DatabaseMetaData: {}", dataSourceName, e.getMessage());
+				}
+			}
+			ResultSet result = databaseMetaData.getTables(connection.getCatalog(), scan.catalog.getSchema(), null, Collections.arr("TABLE"));
+			for (Map<String, Object> map : convertList(result)) {
+				scan.pendingTables.add(Convert.toString(map.get("TABLE_NAME")));
+			}
+			return scan;
+		} finally {
+			DataSourceUtils.releaseConnection(connection, dataSource);
+		}
+	}
+
+	/**
+	 * 通过 information_schema 两条查询取得整库的主键与字段
+	 */
+	private static List<MetaTable> bulkTables(Connection connection, MetaCatalog catalog) throws SQLException {
+		String schema = catalog.getSchema() != null ? catalog.getSchema() : catalog.getDbName();
+		Map<String, MetaTable> tables = new LinkedHashMap<>();
+		try (PreparedStatement statement = connection.prepareStatement(SQL_PRIMARY_KEYS)) {
+			statement.setString(1, schema);
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					String tableName = rs.getString(1);
+					if (!tables.containsKey(tableName)) {
+						MetaTable metaTable = new MetaTable();
+						metaTable.setDbName(catalog.getDbName());
+						metaTable.setTableName(tableName);
+						metaTable.setIdName(rs.getString(2));
+						metaTable.setColumns(new CaseInsensitiveMap<>());
+						tables.put(tableName, metaTable);
+					}
+				}
+			}
+		}
+		try (PreparedStatement statement = connection.prepareStatement(columnsQuery(catalog.getDbType()))) {
+			statement.setString(1, schema);
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					MetaTable metaTable = tables.get(rs.getString(1));
+					if (metaTable != null) {
+						long size = rs.getLong(4);
+						if (rs.wasNull()) {
+							size = rs.getLong(5);
+						}
+						ColumnMetadata column = new ColumnMetadata(rs.getString(2), rs.getString(3), (int) Math.min(size, Integer.MAX_VALUE));
+						metaTable.getColumns().put(column.getColumnName(), column);
+					}
+				}
+			}
+		}
+		return new ArrayList<>(tables.values());
+	}
+
+	/**
+	 * 按数据库类型选择字段类型名的取法
+	 */
+	static String columnsQuery(String dbType) {
+		String type = String.valueOf(dbType).toLowerCase(Locale.ROOT);
+		if (type.contains("mysql") || type.contains("mariadb")) {
+			return String.format(SQL_COLUMNS, TYPE_MYSQL);
+		}
+		if (type.contains("postgres")) {
+			return String.format(SQL_COLUMNS, TYPE_POSTGRESQL);
+		}
+		if (type.equals("h2")) {
+			return String.format(SQL_COLUMNS, TYPE_H2);
+		}
+		return String.format(SQL_COLUMNS, TYPE_DEFAULT);
+	}
+
+	/**
+	 * 根据 information_schema 中的主键与字段计算表结构指纹, 不支持 information_schema 时返回 null
+	 */
+	public static Long fingerprint(DataSource dataSource) {
+		Connection connection = DataSourceUtils.getConnection(dataSource);
+		try {
+			String schema = getConnectionSchema(connection);
+			schema = schema != null ? schema : connection.getCatalog();
+			CRC32 crc = new CRC32();
+			for (String sql : new String[]{SQL_PRIMARY_KEYS, String.format(SQL_COLUMNS, TYPE_DEFAULT)}) {
+				try (PreparedStatement statement = connection.prepareStatement(sql)) {
+					statement.setString(1, schema);
+					try (ResultSet rs = statement.executeQuery()) {
+						int columnCount = rs.getMetaData().getColumnCount();
+						while (rs.next()) {
+							for (int i = 1; i <= columnCount; i++) {
+								crc.update(String.valueOf(rs.getObject(i)).getBytes(StandardCharsets.UTF_8));
+								crc.update('|');
+							}
+						}
+					}
+				}
+			}
+			return crc.getValue();
+		} catch (SQLException e) {
+			log.warn("failed to fingerprint schema: {}", e.getMessage());
+			return null;
+		} finally {
+			DataSourceUtils.releaseConnection(connection, dataSource);
+		}
+	}
+
+	/**
+	 * 逐表调用 DatabaseMetaData 扫描一批表
+	 */
+	private static List<MetaTable> scanTables(DataSource dataSource, MetaCatalog catalog, List<String> tableNames) throws SQLException {
+		Connection connection = DataSourceUtils.doGetConnection(dataSource);
+		try {
+			DatabaseMetaData databaseMetaData = connection.getMetaData();
+			List<MetaTable> metaTables = new ArrayList<>();
+			for (String tableName : tableNames) {
+				List<Map<String, Object>> primaryKeys = convertList(databaseMetaData.getPrimaryKeys(connection.getCatalog(), catalog.getSchema(), tableName));
+				if (!primaryKeys.isEmpty()) {
+					MetaTable metaTable = new MetaTable();
+					metaTable.setDbName(catalog.getDbName());
+					metaTable.setTableName(tableName);
+					metaTable.setIdName(Convert.toString(primaryKeys.get(0).get("COLUMN_NAME")));
+					metaTable.setColumns(MemoryCompiler.fetchMetaParams(databaseMetaData, catalog.getDbType(), tableName));
+					metaTables.add(metaTable);
+				}
+			}
+			return metaTables;
+		} finally {
+			DataSourceUtils.releaseConnection(connection, dataSource);
+		}
+	}
+
+	private static <T> List<T> await(List<Future<T>> futures) {
+		List<T> results = new ArrayList<>(futures.size());
+		try {
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+		} catch (ExecutionException e) {
+			throw new InitException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InitException(e);
+		}
+		return results;
+	}
+
+	private static String getConnectionSchema(Connection connection) throws SQLException {
+		try {
+			return connection.getSchema();
+		} catch (SQLException e) {
+			throw e;
+		} catch (Exception ignore) {
+		}
+		return null;
+	}
+
+	private static class CatalogScan {
+		final MetaCatalog catalog = new MetaCatalog();
+		final DataSource dataSource;
+		final List<String> pendingTables = new ArrayList<>();
+
+		CatalogScan(DataSource dataSource) {
+			this.dataSource = dataSource;
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.github.endless.activejdbc.configuration.ActiveJdbcProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.javalite.activejdbc.ColumnMetadata;
+import org.javalite.common.CaseInsensitiveMap;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * 表结构快照<br>
+ * 扫描成功后将 MetaTable 与 ColumnMetadata 写入本地文件, 下次启动时以 information_schema 的指纹校验,
+ * 指纹一致的数据源直接使用快照, 只有指纹变化或无法计算指纹的数据源才重新扫描
+ *
+ * @author Endless
+ */
+@Slf4j
+public class SchemaSnapshot {
+
+	/**
+	 * 快照文件格式版本, 格式或字段类型名的取法变化时递增, 旧版本文件将被忽略
+	 */
+	static final int VERSION = 2;
+	private static final int MAGIC = 0x414A5353;
+
+	/**
+	 * 获取所有数据源的表结构, 未启用快照时直接扫描
+	 */
+	public static List<MetaCatalog> catalogs(Map<String, DataSource> dataSources) {
+		ActiveJdbcProperties.Snapshot config = ActiveJdbcProperties.current().getSnapshot();
+		if (!config.isEnabled()) {
+			return SchemaIntrospector.introspect(dataSources);
+		}
+		Path path = Paths.get(config.getPath());
+		Map<String, MetaCatalog> snapshot = read(path);
+		Map<String, MetaCatalog> result = new LinkedHashMap<>();
+		Map<String, DataSource> stale = new LinkedHashMap<>();
+		Map<String, Long> fingerprints = new HashMap<>();
+		for (Map.Entry<String, DataSource> dataSource : dataSources.entrySet()) {
+			Long fingerprint = SchemaIntrospector.fingerprint(dataSource.getValue());
+			MetaCatalog cached = snapshot.get(dataSource.getKey());
+			result.put(dataSource.getKey(), null);
+			if (fingerprint != null && cached != null && fingerprint.equals(cached.getFingerprint())) {
+				result.put(dataSource.getKey(), cached);
+			} else {
+				stale.put(dataSource.getKey(), dataSource.getValue());
+				fingerprints.put(dataSource.getKey(), fingerprint);
+			}
+		}
+		log.info("schema snapshot {} : {} up to date, {} to introspect", path, dataSources.size() - stale.size(), stale.size());
+		if (!stale.isEmpty()) {
+			for (MetaCatalog catalog : SchemaIntrospector.introspect(stale)) {
+				catalog.setFingerprint(fingerprints.get(catalog.getDataSourceName()));
+				result.put(catalog.getDataSourceName(), catalog);
+			}
+			write(path, result.values());
+		}
+		return new ArrayList<>(result.values());
+	}
+
+	/**
+	 * 读取快照 文件不存在、版本不符或损坏时返回空
+	 */
+	static Map<String, MetaCatalog> read(Path path) {
+		Map<String, MetaCatalog> catalogs = new HashMap<>();
+		if (!Files.isRegularFile(path)) {
+			return catalogs;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				log.info("ignore schema snapshot {} : unsupported version", path);
+				return catalogs;
+			}
+			int catalogCount = in.readInt();
+			for (int i = 0; i < catalogCount; i++) {
+				MetaCatalog catalog = new MetaCatalog();
+				catalog.setDataSourceName(readString(in));
+				catalog.setDbName(readString(in));
+				catalog.setDbType(readString(in));
+				catalog.setSchema(readString(in));
+				catalog.setFingerprint(in.readBoolean() ? in.readLong() : null);
+				int tableCount = in.readInt();
+				for (int j = 0; j < tableCount; j++) {
+					MetaTable metaTable = new MetaTable();
+					metaTable.setDbName(catalog.getDbName());
+					metaTable.setTableName(readString(in));
+					metaTable.setIdName(readString(in));
+					Map<String, ColumnMetadata> columns = new CaseInsensitiveMap<>();
+					int columnCount = in.readInt();
+					for (int k = 0; k < columnCount; k++) {
+						ColumnMetadata column = new ColumnMetadata(readString(in), readString(in), in.readInt());
+						columns.put(column.getColumnName(), column);
+					}
+					metaTable.setColumns(columns);
+					catalog.getTables().add(metaTable);
+				}
+				catalogs.put(catalog.getDataSourceName(), catalog);
+			}
+		} catch (IOException e) {
+			log.warn("ignore schema snapshot {} : {}", path, e.getMessage());
+			catalogs.clear();
+		}
+		return catalogs;
+	}
+
+	/**
+	 * 写入快照 先写临时文件再替换, 避免并发启动读到半个文件
+	 */
+	static void write(Path path, Collection<MetaCatalog> catalogs) {
+		try {
+			Path parent = path.toAbsolutePath().getParent();
+			Files.createDirectories(parent);
+			Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(catalogs.size());
+				for (MetaCatalog catalog : catalogs) {
+					writeString(out, catalog.getDataSourceName());
+					writeString(out, catalog.getDbName());
+					writeString(out, catalog.getDbType());
+					writeString(out, catalog.getSchema());
+					out.writeBoolean(catalog.getFingerprint() != null);
+					if (catalog.getFingerprint() != null) {
+						out.writeLong(catalog.getFingerprint());
+					}
+					out.writeInt(catalog.getTables().size());
+					for (MetaTable metaTable : catalog.getTables()) {
+						writeString(out, metaTable.getTableName());
+						writeString(out, metaTable.getIdName());
+						out.writeInt(metaTable.getColumns().size());
+						for (ColumnMetadata column : metaTable.getColumns().values()) {
+							writeString(out, column.getColumnName());
+							writeString(out, column.getTypeName());
+							out.writeInt(column.getColumnSize());
+						}
+					}
+				}
+			}
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			log.info("schema snapshot written to {}", path);
+		} catch (IOException e) {
+			log.warn("failed to write schema snapshot {} : {}", path, e.getMessage());
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.github.endless.activejdbc.configuration.ActiveJdbcProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 生成SQL的规范化与链接级别的PreparedStatement缓存<br>
+ * starter打开的链接在借出期间缓存以相同SQL创建的PreparedStatement, activejdbc关闭语句时只归还缓存,
+ * 归还链接前统一关闭; 同一SQL的语句仍在使用时(如遍历结果集时再次执行)另建不缓存的语句<br>
+ * 调用方修改过的语句状态(fetchSize、maxRows、queryTimeout等)在归还时恢复, 无法恢复的状态(cursorName等)使语句不再被缓存<br>
+ * 跨借出的缓存由驱动完成, 例如 MySQL 的 cachePrepStmts/useServerPrepStmts, 规范化后的SQL可以稳定命中驱动缓存
+ *
+ * @author Endless
+ */
+@Slf4j
+public final class StatementCache {
+
+	private static final Counter HITS = Counter.builder("activejdbc.statements.cache").tag("result", "hit")
+	                                           .description("prepared statements reused from the connection cache").register(Metrics.globalRegistry);
+	private static final Counter MISSES = Counter.builder("activejdbc.statements.cache").tag("result", "miss")
+	                                             .description("prepared statements created on the connection").register(Metrics.globalRegistry);
+
+	private StatementCache() {
+	}
+
+	/**
+	 * 规范化starter生成的where条件: 合并连续空白并去掉首尾空白; 不含引号时统一小写, 同一形状的条件得到同一文本<br>
+	 * 生成的条件只包含未加引号的字段名、运算符与占位符, 统一小写不改变语义
+	 */
+	public static String canonical(String sql) {
+		StringBuilder builder = new StringBuilder(sql.length());
+		boolean quoted = false;
+		boolean space = false;
+		for (int i = 0; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				space = builder.length() > 0;
+				continue;
+			}
+			if (space) {
+				builder.append(' ');
+				space = false;
+			}
+			quoted |= c == '\'' || c == '"' || c == '`';
+			builder.append(c);
+		}
+		String result = builder.toString();
+		return quoted ? result : result.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * 为链接开启语句缓存 未启用时原样返回
+	 */
+	static Connection wrap(Connection connection) {
+		ActiveJdbcProperties.Statements config = ActiveJdbcProperties.current().getStatements();
+		if (!config.isCache() || config.getCacheSize() <= 0 || connection == null || Proxy.isProxyClass(connection.getClass())
+				&& Proxy.getInvocationHandler(connection) instanceof CachingConnection) {
+			return connection;
+		}
+		return (Connection) Proxy.newProxyInstance(StatementCache.class.getClassLoader(), new Class<?>[]{Connection.class},
+				new CachingConnection(connection, config.getCacheSize()));
+	}
+
+	/**
+	 * 不经过语句缓存的链接 用于需要独占并修改语句状态的场景(如只进游标), 不可关闭返回的链接
+	 */
+	static Connection uncached(Connection connection) {
+		if (connection != null && Proxy.isProxyClass(connection.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(connection);
+			if (handler instanceof CachingConnection) {
+				return ((CachingConnection) handler).target;
+			}
+		}
+		return connection;
+	}
+
+	/**
+	 * 关闭缓存的语句 返回原始链接用于归还连接池
+	 */
+	static Connection release(Connection connection) {
+		if (connection != null && Proxy.isProxyClass(connection.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(connection);
+			if (handler instanceof CachingConnection) {
+				((CachingConnection) handler).closeStatements();
+				return ((CachingConnection) handler).target;
+			}
+		}
+		return connection;
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+
+	private static final class CachingConnection implements InvocationHandler {
+		final Connection target;
+		final Map<String, CachedStatement> statements;
+
+		CachingConnection(Connection target, int cacheSize) {
+			this.target = target;
+			this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+					if (size() > cacheSize) {
+						eldest.getValue().evict();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("prepareStatement".equals(name) && (args.length == 1 || args.length == 3 && args[1] instanceof Integer && args[2] instanceof Integer)) {
+				String key = args.length == 1 ? (String) args[0] : args[0] + "\u0000" + args[1] + "\u0000" + args[2];
+				CachedStatement cached = statements.get(key);
+				if (cached != null && !cached.inUse && !cached.target.isClosed()) {
+					HITS.increment();
+					cached.target.clearParameters();
+					return cached.checkout();
+				}
+				MISSES.increment();
+				PreparedStatement statement = (PreparedStatement) StatementCache.invoke(target, method, args);
+				if (cached != null && cached.inUse) {
+					return statement;
+				}
+				cached = new CachedStatement(statement);
+				statements.put(key, cached);
+				return cached.checkout();
+			}
+			if ("close".equals(name)) {
+				closeStatements();
+			} else if ("unwrap".equals(name) && args[0] == Connection.class) {
+				return target;
+			}
+			return StatementCache.invoke(target, method, args);
+		}
+
+		void closeStatements() {
+			for (CachedStatement statement : statements.values()) {
+				statement.evict();
+			}
+			statements.clear();
+		}
+	}
+
+	private static final class CachedStatement {
+
+		/**
+		 * 可在归还时恢复为默认值的语句状态
+		 */
+		private static final Set<String> RESETTABLE = new HashSet<>(Arrays.asList("setFetchSize", "setMaxRows", "setLargeMaxRows",
+				"setQueryTimeout", "setFetchDirection", "setMaxFieldSize"));
+		/**
+		 * 无法恢复的语句状态 修改后语句不再缓存
+		 */
+		private static final Set<String> UNRESETTABLE = new HashSet<>(Arrays.asList("setCursorName", "setEscapeProcessing", "setPoolable",
+				"closeOnCompletion"));
+
+		final PreparedStatement target;
+		final Map<Method, Object> defaults = new LinkedHashMap<>();
+		boolean inUse;
+		boolean evicted;
+
+		CachedStatement(PreparedStatement target) {
+			this.target = target;
+		}
+
+		PreparedStatement checkout() {
+			inUse = true;
+			InvocationHandler handler = new InvocationHandler() {
+				boolean closed;
+
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+					switch (method.getName()) {
+						case "close":
+							if (!closed) {
+								closed = true;
+								checkin();
+							}
+							return null;
+						case "isClosed":
+							return closed || target.isClosed();
+						default:
+							if (RESETTABLE.contains(method.getName())) {
+								remember(method);
+							} else if (UNRESETTABLE.contains(method.getName())) {
+								evicted = true;
+							}
+							return StatementCache.invoke(target, method, args);
+					}
+				}
+			};
+			return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, handler);
+		}
+
+		/**
+		 * 首次修改某项状态前记录其默认值
+		 */
+		void remember(Method setter) throws Throwable {
+			if (!defaults.containsKey(setter)) {
+				Method getter = PreparedStatement.class.getMethod("get" + setter.getName().substring(3));
+				defaults.put(setter, StatementCache.invoke(target, getter, null));
+			}
+		}
+
+		void checkin() throws SQLException {
+			inUse = false;
+			if (!evicted && !defaults.isEmpty()) {
+				try {
+					for (Map.Entry<Method, Object> state : defaults.entrySet()) {
+						StatementCache.invoke(target, state.getKey(), new Object[]{state.getValue()});
+					}
+				} catch (Throwable e) {
+					log.debug("failed to reset cached statement, evict: {}", e.getMessage());
+					evicted = true;
+				}
+				defaults.clear();
+			}
+			if (evicted) {
+				target.close();
+			}
+		}
+
+		/**
+		 * 移出缓存 使用中的语句在归还时关闭
+		 */
+		void evict() {
+			evicted = true;
+			if (!inUse) {
+				try {
+					target.close();
+				} catch (SQLException e) {
+					log.warn("failed to close cached statement: {}", e.getMessage());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.github.endless.activejdbc.configuration.ActiveJdbcProperties;
+import com.github.endless.activejdbc.model.BaseModel;
+import lombok.extern.slf4j.Slf4j;
+import org.javalite.activejdbc.MetaModel;
+import org.javalite.activejdbc.Model;
+import org.javalite.activejdbc.ModelDelegate;
+import org.javalite.activejdbc.associations.Association;
+import org.javalite.activejdbc.associations.OneToManyAssociation;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.*;
+
+import static org.javalite.activejdbc.ModelDelegate.metaModelOf;
+
+/**
+ * 按 {@link com.github.endless.activejdbc.annotation.ChildrenClass} 逐层加载子表数据<br>
+ * 每一层每个子表只执行一条 fk IN (...) 查询, 参数个数超过数据库限制时分批, 查询次数只与树的深度有关, 与行数无关<br>
+ * 查出的子表数据在内存中按 fk 分组后挂到父model上
+ *
+ * @author Endless
+ */
+@Slf4j
+final class TreeLoader {
+
+	private static final int ORACLE_IN_LIMIT = 1000;
+	private static final int SQLSERVER_PARAMETER_LIMIT = 2000;
+	private static final Method SET_CHILDREN = ReflectionUtils.findMethod(Model.class, "setChildren", Class.class, List.class);
+	private static final Method SET_CACHED_PARENT = ReflectionUtils.findMethod(Model.class, "setCachedParent", Model.class);
+
+	static {
+		for (Method method : new Method[]{SET_CHILDREN, SET_CACHED_PARENT}) {
+			if (method != null) {
+				ReflectionUtils.makeAccessible(method);
+			}
+		}
+	}
+
+	private TreeLoader() {
+	}
+
+	/**
+	 * 从根开始逐层加载子表, 最多向下 maxDepth 层
+	 */
+	static <T extends Model> List<T> load(List<T> roots, int maxDepth) {
+		List<? extends Model> level = roots;
+		for (int depth = 0; depth < maxDepth && !level.isEmpty(); depth++) {
+			level = loadLevel(level);
+		}
+		return roots;
+	}
+
+	/**
+	 * 加载一层父model的所有子表 返回下一层
+	 */
+	private static List<Model> loadLevel(List<? extends Model> parents) {
+		Map<Class<? extends Model>, List<Model>> byClass = new LinkedHashMap<>();
+		for (Model parent : parents) {
+			byClass.computeIfAbsent(parent.getClass(), k -> new ArrayList<>()).add(parent);
+		}
+		List<Model> next = new ArrayList<>();
+		for (Map.Entry<Class<? extends Model>, List<Model>> entry : byClass.entrySet()) {
+			MetaModel parentMetaModel = metaModelOf(entry.getKey());
+			List<Object> ids = ids(entry.getValue());
+			for (Class<? extends Model> childClass : ContextHelper.getChildrenClass(entry.getKey())) {
+				OneToManyAssociation association = association(parentMetaModel, childClass);
+				if (association == null) {
+					continue;
+				}
+				IdIndex<List<Model>> children = children(childClass, association.getFkName(), ids);
+				for (Model parent : entry.getValue()) {
+					List<Model> list = children.get(parent.getId());
+					attach(parent, childClass, list);
+					if (list != null) {
+						next.addAll(list);
+					}
+				}
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * 按 fk 分批查询子表 结果以 fk 分组
+	 */
+	private static IdIndex<List<Model>> children(Class<? extends Model> childClass, String fkName, List<Object> ids) {
+		MetaModel childMetaModel = metaModelOf(childClass);
+		IdIndex<List<Model>> children = new IdIndex<>(ids.size());
+		for (List<Object> chunk : new Partition<>(ids, parameterLimit(childMetaModel))) {
+			String query = fkName + " IN (" + BatchWriter.placeholders(chunk.size()) + ")";
+			log.debug("load {} by {} : {} parents", childMetaModel.getTableName(), fkName, chunk.size());
+			for (Model child : ModelDelegate.where(childClass, query, chunk.toArray()).orderBy(childMetaModel.getIdName())) {
+				children.computeIfAbsent(child.get(fkName), ArrayList::new).add(child);
+			}
+		}
+		return children;
+	}
+
+	private static OneToManyAssociation association(MetaModel parentMetaModel, Class<? extends Model> childClass) {
+		for (Association association : parentMetaModel.getAssociationsForTarget(childClass)) {
+			if (association instanceof OneToManyAssociation) {
+				return (OneToManyAssociation) association;
+			}
+		}
+		return null;
+	}
+
+	private static List<Object> ids(List<Model> models) {
+		Set<Object> ids = new LinkedHashSet<>();
+		for (Model model : models) {
+			if (model.getId() != null) {
+				ids.add(model.getId());
+			}
+		}
+		return new ArrayList<>(ids);
+	}
+
+	/**
+	 * 每条 IN 查询的参数个数 取配置与数据库限制中较小的值
+	 */
+	static int parameterLimit(MetaModel metaModel) {
+		int limit = Math.max(1, ActiveJdbcProperties.current().getInclude().getChunkSize());
+		String dialect = metaModel.getDialect().getClass().getSimpleName();
+		if (dialect.startsWith("Oracle")) {
+			return Math.min(limit, ORACLE_IN_LIMIT);
+		}
+		if (dialect.startsWith("MSSQL")) {
+			return Math.min(limit, SQLSERVER_PARAMETER_LIMIT);
+		}
+		return limit;
+	}
+
+	/**
+	 * 将子表数据以只读列表挂到父model上, 之后 toMap 和 getAll 直接使用, 不再查询; children 为 null 时挂空列表
+	 */
+	static void attach(Model parent, Class<? extends Model> childClass, List<Model> children) {
+		List<Model> list = new AttachedList<>(children == null ? Collections.emptyList() : children);
+		if (parent instanceof BaseModel) {
+			((BaseModel) parent).include(childClass, list);
+		} else if (SET_CHILDREN != null) {
+			ReflectionUtils.invokeMethod(SET_CHILDREN, parent, childClass, list);
+		}
+	}
+
+	/**
+	 * 将父表数据挂到子model上 parent 可为 null
+	 */
+	static void attachParent(Model child, Model parent) {
+		if (SET_CACHED_PARENT != null && parent != null) {
+			ReflectionUtils.invokeMethod(SET_CACHED_PARENT, child, parent);
+		}
+	}
+
+	/**
+	 * 已加载的子表数据 Model.getAll 要求缓存的子表为 activejdbc 的 LazyList
+	 */
+	private static final class AttachedList<T extends Model> extends org.javalite.activejdbc.LazyList<T> {
+
+		private AttachedList(List<T> children) {
+			delegate = Collections.unmodifiableList(children);
+		}
+
+		@Override
+		protected void hydrate() {
+		}
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.github.endless.activejdbc.constant.Keys;
+import org.javalite.activejdbc.ColumnMetadata;
+import org.javalite.activejdbc.MetaModel;
+import org.javalite.activejdbc.Model;
+import org.javalite.activejdbc.ModelDelegate;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 编译后的where条件<br>
+ * 以 model类、参与筛选的字段集合、是否全等、是否或运算 为键缓存, 同一形状的条件在JVM中只拼接一次,
+ * 每次请求只需遍历一次字段并按预先确定的顺序取参数
+ *
+ * @author Endless
+ */
+final class WherePlan {
+
+	/**
+	 * 以 ClassValue 挂在model类上, 不持有类的强引用, 旧generation的model类可被卸载
+	 */
+	private static final ClassValue<AtomicReference<Columns>> COLUMNS = new ClassValue<AtomicReference<Columns>>() {
+		@Override
+		protected AtomicReference<Columns> computeValue(Class<?> type) {
+			return new AtomicReference<>();
+		}
+	};
+
+	/**
+	 * where条件 无筛选字段时为 {@link Keys#SQL_WHERE_DEFAULT}
+	 */
+	final String query;
+	/**
+	 * 未替换为默认条件的where语句, 与 subQuery/subQueryNotLike 的返回值一致
+	 */
+	final String subQuery;
+	/**
+	 * 取参数时使用的key, 顺序与占位符一致
+	 */
+	final String[] paramKeys;
+	final String paramSuffix;
+
+	private WherePlan(String[] columnNames, String[] paramKeys, boolean isEqual, boolean isOr) {
+		String delimiter;
+		String suffix;
+		if (isEqual) {
+			delimiter = isOr ? Keys.SQL_WHERE_DELIMITER_OR : Keys.SQL_WHERE_DELIMITER_AND;
+			suffix = Keys.SQL_WHERE_SUFFIX;
+		} else {
+			delimiter = isOr ? Keys.SQL_WHERE_DELIMITER_OR_LIKE : Keys.SQL_WHERE_DELIMITER_AND_LIKE;
+			suffix = Keys.SQL_WHERE_SUFFIX_LIKE;
+		}
+		this.subQuery = StatementCache.canonical(Keys.SQL_WHERE_PREFIX + String.join(delimiter, columnNames) + suffix);
+		this.query = columnNames.length == 0 ? Keys.SQL_WHERE_DEFAULT : subQuery;
+		this.paramKeys = paramKeys;
+		this.paramSuffix = isEqual ? Keys.EMPTY : Keys.SQL_FIELD_LIKE;
+	}
+
+	/**
+	 * 取得参数对应的where条件, input中嵌套的input会被展开
+	 *
+	 * @param isEqual 是否全等匹配
+	 */
+	static WherePlan of(Class<? extends Model> modelClass, Map input, boolean isEqual) {
+		ContextHelper.deLayer(input);
+		Columns columns = columns(modelClass);
+		long[] mask = new long[(columns.names.length + 63) >>> 6];
+		for (int i = 0; i < columns.names.length; i++) {
+			if (present(input, columns.names[i], columns.lowerNames[i])) {
+				mask[i >>> 6] |= 1L << i;
+			}
+		}
+		Shape shape = new Shape(mask, isEqual, ContextHelper.isOr(input));
+		WherePlan plan = columns.plans.get(shape);
+		if (plan == null) {
+			plan = columns.plans.computeIfAbsent(shape, key -> key.compile(columns));
+		}
+		return plan;
+	}
+
+	/**
+	 * 按主键查询的条件
+	 */
+	static String idQuery(Class<? extends Model> modelClass) {
+		return columns(modelClass).idQuery;
+	}
+
+	/**
+	 * 按顺序取出参数
+	 */
+	Object[] params(Map input) {
+		Object[] params = new Object[paramKeys.length];
+		for (int i = 0; i < paramKeys.length; i++) {
+			params[i] = input.get(paramKeys[i]) + paramSuffix;
+		}
+		return params;
+	}
+
+	/**
+	 * 与 {@link ContextHelper#existKey} 判断一致
+	 */
+	private static boolean present(Map input, String name, String lowerName) {
+		if (!input.containsKey(name) && !input.containsKey(lowerName)) {
+			return false;
+		}
+		Object value = input.get(name);
+		return (value != null && value != "") || input.get(lowerName) != "";
+	}
+
+	/**
+	 * model的字段 表结构增量刷新替换字段元数据后重新生成
+	 */
+	private static Columns columns(Class<? extends Model> modelClass) {
+		MetaModel metaModel = ModelDelegate.metaModelOf(modelClass);
+		Map<String, ColumnMetadata> metadata = metaModel.getColumnMetadata();
+		AtomicReference<Columns> reference = COLUMNS.get(modelClass);
+		Columns columns = reference.get();
+		if (columns == null || columns.metadata != metadata) {
+			columns = new Columns(metadata, metaModel.getIdName());
+			reference.set(columns);
+		}
+		return columns;
+	}
+
+	private static final class Columns {
+		final Map<String, ColumnMetadata> metadata;
+		final String[] names;
+		final String[] lowerNames;
+		final String idQuery;
+		final Map<Shape, WherePlan> plans = new ConcurrentHashMap<>();
+
+		Columns(Map<String, ColumnMetadata> metadata, String idName) {
+			this.metadata = metadata;
+			this.idQuery = StatementCache.canonical(idName + Keys.SQL_WHERE_SINGLE_PLACEHOLDER);
+			this.names = metadata.values().stream().map(ColumnMetadata::getColumnName).toArray(String[]::new);
+			this.lowerNames = Arrays.stream(names).map(String::toLowerCase).toArray(String[]::new);
+		}
+	}
+
+	private static final class Shape {
+		final long[] mask;
+		final boolean isEqual;
+		final boolean isOr;
+		final int hash;
+
+		Shape(long[] mask, boolean isEqual, boolean isOr) {
+			this.mask = mask;
+			this.isEqual = isEqual;
+			this.isOr = isOr;
+			this.hash = (Arrays.hashCode(mask) * 31 + Boolean.hashCode(isEqual)) * 31 + Boolean.hashCode(isOr);
+		}
+
+		WherePlan compile(Columns columns) {
+			int count = 0;
+			for (long word : mask) {
+				count += Long.bitCount(word);
+			}
+			String[] columnNames = new String[count];
+			String[] paramKeys = new String[count];
+			for (int i = 0, j = 0; i < columns.names.length; i++) {
+				if ((mask[i >>> 6] & (1L << i)) != 0) {
+					columnNames[j] = columns.names[i];
+					paramKeys[j++] = columns.lowerNames[i];
+				}
+			}
+			return new WherePlan(columnNames, paramKeys, isEqual, isOr);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Shape)) {
+				return false;
+			}
+			Shape shape = (Shape) o;
+			return isEqual == shape.isEqual && isOr == shape.isOr && Arrays.equals(mask, shape.mask);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
@@ -33,12 +33,19 @@ import org.javalite.activejdbc.annotations.DbName;
 import org.javalite.common.Collections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 /***
  * @author Endless
@@ -49,7 +56,13 @@ import java.util.TreeSet;
 public class EnableModelHander {
 
     private static final String URI_TEMPLATE_VARIABLES = "org.springframework.web.servlet.HandlerMapping.uriTemplateVariables";
+    private static final String MODEL_NAME = "model-name";
+    private static final String MODEL_NAME_VARIABLE = "{" + MODEL_NAME + "}";
     private final Logger logger = LoggerFactory.getLogger(getClass());
+    /**
+     * 目标类 > 方法 > 预先解析的切面执行计划
+     */
+    private final Map<Class<?>, Map<Method, AdvicePlan>> plans = new ConcurrentHashMap<>();
 
     @Pointcut("@within(com.github.endless.activejdbc.annotation.EnableModel) || @annotation(com.github.endless.activejdbc.annotation.EnableModel)")
     public void switchDataSource() {
@@ -65,64 +78,127 @@ public class EnableModelHander {
         long before = System.currentTimeMillis();
         Object result = null;
         try {
-            String[] modelType = modelType(point);
-            ContextHelper.initConnections(modelType);
-            if (modelType.length == 0) {
+            AdvicePlan plan = plan(point);
+            String dataSourceKey = plan.dbNames.length > 0 ? plan.dbNames[0] : null;
+            String dynamicDbName = plan.modelName ? dynamicDbName() : null;
+            if (dynamicDbName != null && (dataSourceKey == null || dynamicDbName.compareTo(dataSourceKey) < 0)) {
+                dataSourceKey = dynamicDbName;
+            }
+            if (dataSourceKey == null) {
+                ContextHelper.initConnections(plan.dbNames);
                 return point.proceed();
             }
-            ApplicationContextHelper.setDataSourceKey(modelType[0]);
-            logger.info("{} | {} | data source switch to {}", getSimpleName(point),
-                    point.getSignature().getName(), modelType[0]);
+            ApplicationContextHelper.setDataSourceKey(dataSourceKey);
+            ApplicationContextHelper.setReadOnly(plan.readOnly);
+            if (logger.isDebugEnabled()) {
+                logger.debug("{} | {} | data source switch to {}{}", plan.simpleName, plan.methodName, dataSourceKey, plan.readOnly ? " (read-only)" : "");
+            }
             try {
-                ContextHelper.openTransaction();
-                result = point.proceed();
-                ContextHelper.commitTransaction();
-            } catch (Exception e) {
-                logger.error("Exec db operation failed.");
-                ContextHelper.rollbackTransaction();
-                throw e;
+                ContextHelper.initConnections(plan.dbNames);
+                if (dynamicDbName != null) {
+                    ContextHelper.addConnection(dynamicDbName);
+                }
+                if (plan.readOnly) {
+                    ContextHelper.readOnlyConnections();
+                    result = point.proceed();
+                } else {
+                    try {
+                        ContextHelper.openTransaction();
+                        result = point.proceed();
+                        ContextHelper.commitTransaction();
+                    } catch (Exception e) {
+                        logger.error("Exec db operation failed.");
+                        ContextHelper.rollbackTransaction();
+                        throw e;
+                    }
+                }
             } finally {
                 ContextHelper.releaseConnection();
+                ApplicationContextHelper.setReadOnly(false);
             }
         } catch (Throwable e) {
             logger.error("SwitchDataSource failed.");
             throw e;
         } finally {
-            logger.info("Success ! Processing took: {} milliseconds", System.currentTimeMillis() - before);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Success ! Processing took: {} milliseconds", System.currentTimeMillis() - before);
+            }
         }
         return result;
     }
 
-    private String getSimpleName(ProceedingJoinPoint point) throws SecurityException {
-        return point.getTarget().getClass().getSimpleName();
+    /**
+     * 取得方法的执行计划 首次调用时解析并缓存, 之后直接命中缓存
+     */
+    private AdvicePlan plan(ProceedingJoinPoint point) throws NoSuchMethodException {
+        Class<?> pointClass = point.getTarget().getClass();
+        Method method = ((MethodSignature) point.getSignature()).getMethod();
+        Map<Method, AdvicePlan> classPlans = plans.get(pointClass);
+        AdvicePlan plan = classPlans != null ? classPlans.get(method) : null;
+        if (plan == null) {
+            plan = new AdvicePlan(pointClass, method);
+            plans.computeIfAbsent(pointClass, key -> new ConcurrentHashMap<>()).put(method, plan);
+        }
+        return plan;
     }
 
     /**
-     * 获取类和方法上的注解值
+     * 通用接口路径中的表名对应的数据库
      */
-    private <T extends Model> String[] modelType(ProceedingJoinPoint point) throws NoSuchMethodException, SecurityException,
-            IllegalArgumentException {
-        MethodSignature pointMethod = (MethodSignature) point.getSignature();
-        Class<? extends Object> pointClass = point.getTarget().getClass();
-        Method currentMethod = pointClass.getMethod(pointMethod.getName(), pointMethod.getParameterTypes());
-        EnableModel methodModel = pointClass.getAnnotation(EnableModel.class);
-        EnableModel classModel = currentMethod.getAnnotation(EnableModel.class);
-        TreeSet<String> result = new TreeSet<String>();
-        if (methodModel != null) {
-            result.addAll(Collections.li(methodModel.value()));
-        }
-        if (classModel != null) {
-            result.addAll(Collections.li(classModel.value()));
-        }
-        Map<String, String> a = (Map<String, String>) ApplicationContextHelper.getRequestAttributes().get().getAttribute(URI_TEMPLATE_VARIABLES, 0);
-        if (a.get("model-name") != null) {
-            result.add(ContextHelper.modelClass(a.get("model-name")).getAnnotation(DbName.class).value());
+    private String dynamicDbName() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
         }
-        if (!(pointClass.getGenericSuperclass() instanceof Class)) {
-            Class<T> clazz = (Class<T>) ((ParameterizedType) pointClass.getGenericSuperclass()).getActualTypeArguments()[0];
-            result.add(clazz.getAnnotation(DbName.class).value());
+        Map<String, String> variables = (Map<String, String>) attributes.getAttribute(URI_TEMPLATE_VARIABLES, RequestAttributes.SCOPE_REQUEST);
+        String modelName = variables != null ? variables.get(MODEL_NAME) : null;
+        return modelName != null ? ContextHelper.modelClass(modelName).getAnnotation(DbName.class).value() : null;
+    }
+
+    /**
+     * 一个方法的切面执行计划: 类和方法上的注解值、泛型model的数据库、是否需要从路径中解析表名、是否只读
+     */
+    private static class AdvicePlan {
+        final String simpleName;
+        final String methodName;
+        final String[] dbNames;
+        final boolean modelName;
+        final boolean readOnly;
+
+        <T extends Model> AdvicePlan(Class<?> pointClass, Method signatureMethod) throws NoSuchMethodException {
+            Method currentMethod = pointClass.getMethod(signatureMethod.getName(), signatureMethod.getParameterTypes());
+            EnableModel classModel = pointClass.getAnnotation(EnableModel.class);
+            EnableModel methodModel = currentMethod.getAnnotation(EnableModel.class);
+            TreeSet<String> result = new TreeSet<String>();
+            if (classModel != null) {
+                result.addAll(Collections.li(classModel.value()));
+            }
+            if (methodModel != null) {
+                result.addAll(Collections.li(methodModel.value()));
+            }
+            if (!(pointClass.getGenericSuperclass() instanceof Class)) {
+                Class<T> clazz = (Class<T>) ((ParameterizedType) pointClass.getGenericSuperclass()).getActualTypeArguments()[0];
+                result.add(clazz.getAnnotation(DbName.class).value());
+            }
+            RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(currentMethod, RequestMapping.class);
+            this.modelName = mapping != null && Stream.of(mapping.path()).anyMatch(path -> path.contains(MODEL_NAME_VARIABLE));
+            this.readOnly = readOnly(methodModel, classModel, mapping);
+            this.dbNames = result.toArray(new String[]{});
+            this.simpleName = pointClass.getSimpleName();
+            this.methodName = currentMethod.getName();
         }
-        return result.toArray(new String[]{});
 
+        /**
+         * 方法上的access优先于类上的, 都为AUTO时只映射GET/HEAD的方法为只读
+         */
+        private static boolean readOnly(EnableModel methodModel, EnableModel classModel, RequestMapping mapping) {
+            for (EnableModel model : new EnableModel[]{methodModel, classModel}) {
+                if (model != null && model.access() != EnableModel.Access.AUTO) {
+                    return model.access() == EnableModel.Access.READ_ONLY;
+                }
+            }
+            return mapping != null && mapping.method().length > 0
+                    && Stream.of(mapping.method()).allMatch(method -> method == RequestMethod.GET || method == RequestMethod.HEAD);
+        }
     }
 }
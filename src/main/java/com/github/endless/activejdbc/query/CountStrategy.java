@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.query;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import org.springframework.util.StringUtils;
+
+import java.util.Arrays;
+
+/**
+ * 分页查询的总数统计方式
+ *
+ * @author Endless
+ */
+@ApiModel(description = "分页总数统计方式")
+public enum CountStrategy {
+    @ApiModelProperty(name = "EXACT", notes = "精确统计 select count(*)")
+    EXACT,
+    @ApiModelProperty(name = "NONE", notes = "不统计总数, 多取一条判断是否有下一页")
+    NONE,
+    @ApiModelProperty(name = "ESTIMATED", notes = "取执行计划或表统计信息中的估算行数, 数据库不支持时精确统计")
+    ESTIMATED,
+    @ApiModelProperty(name = "CAPPED", notes = "最多统计到countLimit条")
+    CAPPED;
+
+    /**
+     * 解析请求参数 忽略大小写, 为空时精确统计
+     */
+    public static CountStrategy of(String value) {
+        if (!StringUtils.hasText(value)) {
+            return EXACT;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown count strategy: " + value + ", expected one of " + Arrays.toString(values()));
+        }
+    }
+}
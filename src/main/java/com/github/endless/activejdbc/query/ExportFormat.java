@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.query;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import org.springframework.util.StringUtils;
+
+import java.util.Arrays;
+
+/**
+ * 流式导出格式
+ *
+ * @author Endless
+ */
+@ApiModel(description = "导出格式")
+public enum ExportFormat {
+    @ApiModelProperty(name = "NDJSON", notes = "每行一个json对象")
+    NDJSON("application/x-ndjson", "ndjson"),
+    @ApiModelProperty(name = "CSV", notes = "首行为字段名的csv")
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * 解析请求参数 忽略大小写, 为空时导出ndjson
+     */
+    public static ExportFormat of(String value) {
+        if (!StringUtils.hasText(value)) {
+            return NDJSON;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown export format: " + value + ", expected one of " + Arrays.toString(values()));
+        }
+    }
+}
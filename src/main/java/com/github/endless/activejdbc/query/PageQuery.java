@@ -45,4 +45,21 @@ public class PageQuery<E> {
     private Long total;
 
     private List<E> rows;
+
+    /**
+     * 游标分页时下一页的游标, 没有下一页时为null
+     */
+    private String cursor;
+    /**
+     * 本次实际使用的总数统计方式 ESTIMATED/CAPPED 时total不是精确值, NONE 时total为null
+     */
+    private CountStrategy countStrategy;
+    /**
+     * 是否存在下一页
+     */
+    private Boolean hasNext;
+
+    public PageQuery(String orderBys, Integer pageSize, Integer pageNum, Long total, List<E> rows) {
+        this(orderBys, pageSize, pageNum, total, rows, null, CountStrategy.EXACT, null);
+    }
 }
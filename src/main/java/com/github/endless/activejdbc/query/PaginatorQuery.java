@@ -41,4 +41,8 @@ public class PaginatorQuery {
     private Integer pageSize;
 
     private String orderBy;
+
+    private String cursor;
+    private CountStrategy countStrategy;
+    private Long countLimit;
 }
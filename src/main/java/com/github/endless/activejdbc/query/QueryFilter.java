@@ -23,6 +23,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.github.endless.activejdbc.constant.Keys;
 import com.github.endless.activejdbc.core.ContextHelper;
 import com.github.endless.activejdbc.core.Paginator;
+import com.github.endless.activejdbc.core.StatementCache;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.AllArgsConstructor;
@@ -36,6 +37,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 朱领埔
@@ -77,6 +79,18 @@ public class QueryFilter<V> {
     @ApiModelProperty(name = "view", notes = "可作为查询参数的字段列表")
     private V view;
 
+    @JsonInclude
+    @ApiModelProperty(name = "cursor", notes = "游标分页,传入上一页返回的cursor,第一页传空字符串;不传则按页码分页")
+    private String cursor;
+
+    @JsonInclude
+    @ApiModelProperty(name = "countStrategy", notes = "总数统计方式 EXACT:精确 NONE:不统计 ESTIMATED:估算 CAPPED:最多统计到countLimit条", example = "EXACT")
+    private CountStrategy countStrategy = CountStrategy.EXACT;
+
+    @JsonInclude
+    @ApiModelProperty(name = "countLimit", notes = "CAPPED 方式的统计上限", example = "10000")
+    private Long countLimit;
+
     /**
      * 各条件组之间以and链接 <br>
      * 同一组条件之间以or链接<br>
@@ -110,7 +124,7 @@ public class QueryFilter<V> {
             }).collect(Collectors.joining(" or ", "and ( ", " )"));
         }).collect(Collectors.joining(" ", "1 ", " and 1 ")));
         params = params.stream().filter(e -> e != null).collect(Collectors.toList());
-        return where.toString();
+        return StatementCache.canonical(where.toString());
     }
 
     public String orderBy(Class<Model> modelClass) {
@@ -128,9 +142,22 @@ public class QueryFilter<V> {
                 .columns(selectColumns(modelClass))
                 .pageSize(getPageSize())
                 .currentPageIndex(getPageNum(), true)
+                .cursor(getCursor())
+                .countStrategy(getCountStrategy())
+                .countLimit(getCountLimit())
                 .create().apply();
     }
 
+    /**
+     * 按筛选条件返回逐行读取的model流, 须在链接释放前关闭
+     *
+     * @see ContextHelper#stream(Class, String, String, Object...)
+     */
+    public Stream<Model> stream(Class<Model> modelClass) {
+        String where = query(modelClass);
+        return ContextHelper.stream(modelClass, where, orderBy(modelClass), getParams().toArray());
+    }
+
     public List<String> selectColumns(Class<Model> modelClass) {
         return getColumns().stream().filter(e -> ModelDelegate.attributeNames(modelClass).contains(e)).collect(Collectors.toList());
     }
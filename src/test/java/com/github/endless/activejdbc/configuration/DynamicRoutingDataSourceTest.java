@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.configuration;
+
+import com.github.endless.activejdbc.constant.ModelType;
+import com.github.endless.activejdbc.core.ApplicationContextHelper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DynamicRoutingDataSourceTest {
+
+	private static final String PRIMARY = "jdbc:h2:mem:routing_primary";
+	private static final String REPLICA = "jdbc:h2:mem:routing_replica";
+
+	private final StandIn replicaSource = new StandIn(h2(REPLICA));
+	private final Replica replica = new Replica("replica", replicaSource);
+	private final ReplicaGroup group = new ReplicaGroup(Collections.singletonList(replica), new LoadBalancer.RoundRobin());
+	private final DynamicRoutingDataSource routing = new DynamicRoutingDataSource();
+
+	@BeforeAll
+	static void meters() {
+		Metrics.addRegistry(new SimpleMeterRegistry());
+	}
+
+	@BeforeEach
+	void setUp() {
+		DataSource primary = h2(PRIMARY);
+		routing.setTargetDataSources(Collections.singletonMap(ModelType.MASTER, primary));
+		routing.setDefaultTargetDataSource(primary);
+		routing.setReplicaGroups(Collections.singletonMap(ModelType.MASTER, group));
+		routing.afterPropertiesSet();
+	}
+
+	@AfterEach
+	void tearDown() {
+		routing.destroy();
+		ApplicationContextHelper.setReadOnly(false);
+	}
+
+	@Test
+	void readsOutsideTransactionGoToReplica() throws SQLException {
+		double primaryRoutes = routes("primary");
+		double replicaRoutes = routes("replica");
+		ApplicationContextHelper.setReadOnly(true);
+		assertEquals(REPLICA, url(routing));
+		ApplicationContextHelper.setReadOnly(false);
+		assertEquals(PRIMARY, url(routing));
+		assertEquals(1, routes("replica") - replicaRoutes);
+		assertEquals(1, routes("primary") - primaryRoutes);
+	}
+
+	@Test
+	void readsInsideTransactionStayOnPrimary() {
+		TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(routing));
+		transaction.execute(status -> {
+			ApplicationContextHelper.setReadOnly(true);
+			try {
+				Connection bound = DataSourceUtils.getConnection(routing);
+				assertEquals(PRIMARY, bound.getMetaData().getURL());
+				DataSourceUtils.releaseConnection(bound, routing);
+				assertEquals(PRIMARY, url(routing));
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+			return null;
+		});
+	}
+
+	@Test
+	void failingReplicaIsEvictedAndReadsFallBackToPrimary() throws SQLException {
+		ApplicationContextHelper.setReadOnly(true);
+		double replicaRoutes = routes("replica");
+		double primaryRoutes = routes("primary");
+		replicaSource.down = true;
+		assertEquals(PRIMARY, url(routing));
+		assertFalse(replica.isAvailable(System.currentTimeMillis()));
+		assertEquals(0, routes("replica") - replicaRoutes);
+		assertEquals(1, routes("primary") - primaryRoutes);
+
+		replicaSource.down = false;
+		assertEquals(PRIMARY, url(routing), "evicted replica is skipped until it is checked again");
+	}
+
+	@Test
+	void healthCheckEvictsAndReadmitsReplica() throws SQLException {
+		ApplicationContextHelper.setReadOnly(true);
+		replicaSource.down = true;
+		group.check(1, 60000);
+		assertFalse(replica.isAvailable(System.currentTimeMillis()));
+		assertEquals(PRIMARY, url(routing));
+
+		replicaSource.down = false;
+		group.check(1, 60000);
+		assertTrue(replica.isAvailable(System.currentTimeMillis()));
+		assertEquals(REPLICA, url(routing));
+	}
+
+	private static String url(DataSource dataSource) throws SQLException {
+		try (Connection connection = dataSource.getConnection()) {
+			return connection.getMetaData().getURL();
+		}
+	}
+
+	private static double routes(String target) {
+		Counter counter = Metrics.globalRegistry.find("activejdbc.datasource.routes").tag("key", ModelType.MASTER.toString()).tag("target", target).counter();
+		return counter == null ? 0 : counter.count();
+	}
+
+	private static DataSource h2(String url) {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL(url);
+		dataSource.setUser("sa");
+		return dataSource;
+	}
+
+	/**
+	 * 可模拟宕机的从库
+	 */
+	private static class StandIn extends DelegatingDataSource {
+		volatile boolean down;
+
+		StandIn(DataSource dataSource) {
+			super(dataSource);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			if (down) {
+				throw new SQLException("replica is down");
+			}
+			return super.getConnection();
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.github.endless.activejdbc.configuration.BizException;
+import com.github.endless.activejdbc.constant.Keys;
+import com.github.endless.activejdbc.controller.AbstractController;
+import com.github.endless.activejdbc.domains.BaseModelVO;
+import org.javalite.activejdbc.Base;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AbstractControllerTest extends H2Support {
+
+	private final OrderController controller = new OrderController();
+
+	@Test
+	void rejectsUnknownFields() {
+		long id = order();
+		BizException e = assertThrows(BizException.class, () -> controller.findById(id, "code,secret"));
+		assertTrue(e.getMessage().contains(Keys.LOG_MSG_UNKNOWN_FIELD + "secret"), e.getMessage());
+		assertThrows(BizException.class, () -> controller.includeAll(id, "secret"));
+		Map<String, Object> input = new HashMap<>();
+		input.put(Keys.SQL_SELECT_FIELDS, "secret");
+		assertThrows(BizException.class, () -> controller.export(input, false, new MockHttpServletResponse()));
+	}
+
+	@Test
+	void includeAllProjectsKnownFields() {
+		long id = order();
+		Map<String, Object> order = controller.includeAll(id, "id").data;
+		assertEquals(id, ((Number) order.get("id")).longValue());
+		assertFalse(order.containsKey("code"), "code was not requested");
+		assertEquals(2, ((List<?>) order.get("order_lines")).size());
+	}
+
+	@Test
+	void exportProjectsKnownFields() throws Exception {
+		order();
+		Map<String, Object> input = new HashMap<>();
+		input.put(Keys.SQL_SELECT_FIELDS, "code");
+		input.put(Keys.EXPORT_FORMAT, "csv");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.export(input, false, response);
+		String header = response.getContentAsString().split("\\r?\\n")[0].toLowerCase();
+		assertEquals(new TreeSet<>(Arrays.asList("id", "code")), new TreeSet<>(Arrays.asList(header.split(","))));
+	}
+
+	private static long order() {
+		Base.exec("INSERT INTO orders (code) VALUES (?)", "o1");
+		long id = ((Number) Base.firstCell("SELECT MAX(id) FROM orders")).longValue();
+		Base.exec("INSERT INTO order_lines (order_id, sku) VALUES (?, ?)", id, "a");
+		Base.exec("INSERT INTO order_lines (order_id, sku) VALUES (?, ?)", id, "b");
+		return id;
+	}
+
+	static class OrderController extends AbstractController<Order, BaseModelVO> {
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.github.endless.activejdbc.configuration.ActiveJdbcProperties;
+import org.javalite.activejdbc.Base;
+import org.javalite.activejdbc.ModelDelegate;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchWriterTest extends H2Support {
+
+	@Test
+	void createOrUpdateInsertsRowsAndReturnsKeysInInputOrder() {
+		List<Map> rows = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			Map<String, Object> row = new HashMap<>();
+			row.put("title", "t" + i);
+			if (i % 2 == 0) {
+				row.put("score", new BigDecimal(i));
+			}
+			rows.add(row);
+		}
+		List<Article> saved = BatchWriter.createOrUpdate(Article.class, rows);
+		assertEquals(5, saved.size());
+		for (int i = 0; i < saved.size(); i++) {
+			Article article = saved.get(i);
+			assertNotNull(article.getId());
+			assertEquals("t" + i, Base.firstCell("SELECT title FROM article WHERE id = ?", article.getId()));
+		}
+		assertEquals(5L, ((Number) Base.firstCell("SELECT COUNT(*) FROM article WHERE created_at IS NOT NULL")).longValue());
+	}
+
+	@Test
+	void createOrUpdateSetsExplicitNulls() {
+		long id = insert("title", "1.50", "2021-01-01 10:00:00");
+		Map<String, Object> row = new HashMap<>();
+		row.put("id", id);
+		row.put("title", null);
+		BatchWriter.createOrUpdate(Article.class, Collections.singletonList(row));
+		Article article = ModelDelegate.findById(Article.class, id);
+		assertNull(article.get("title"));
+		assertEquals(0, new BigDecimal("1.50").compareTo(article.getBigDecimal("score")), "columns not in the row stay untouched");
+	}
+
+	@Test
+	void upsertInsertsNewAndUpdatesExistingRows() {
+		long id = insert("old", "1", null);
+		Article existing = ModelDelegate.create(Article.class).set("id", id, "title", "new");
+		Article created = ModelDelegate.create(Article.class).set("title", "created");
+		int affected = BatchWriter.upsert(Base.connection(), Arrays.asList(existing, created));
+		assertEquals(2, affected);
+		assertEquals("new", Base.firstCell("SELECT title FROM article WHERE id = ?", id));
+		assertEquals(2L, ((Number) Base.firstCell("SELECT COUNT(*) FROM article")).longValue());
+	}
+
+	@Test
+	void upsertFallsBackToMergeForUnknownDialects() {
+		assertNull(BatchWriter.Upsert.of("Oracle"));
+		assertEquals(BatchWriter.Upsert.H2, BatchWriter.Upsert.of("H2"));
+	}
+
+	@Test
+	void deleteReturnsOnlyRowsItChanged() {
+		long first = insert("a", null, null);
+		long second = insert("b", null, null);
+		long deleted = insert("c", null, null);
+		Base.exec("UPDATE article SET is_delete = 1 WHERE id = ?", deleted);
+		List<Object> result = BatchWriter.delete(Article.class, Arrays.asList(first, deleted, -1L), true);
+		assertEquals(Collections.singletonList(first), result);
+		assertEquals(1, ((Number) Base.firstCell("SELECT is_delete FROM article WHERE id = ?", first)).intValue());
+
+		result = BatchWriter.delete(Article.class, Arrays.asList(second, -1L), false);
+		assertEquals(Collections.singletonList(second), result);
+		assertNull(Base.firstCell("SELECT id FROM article WHERE id = ?", second));
+	}
+
+	@Test
+	void deleteSplitsIdsIntoInChunksAndRestoresAutoCommit() throws Exception {
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			ids.add(insert("t" + i, null, null));
+		}
+		List<Object> requested = new ArrayList<>(ids);
+		requested.add(2, -1L);
+		ActiveJdbcProperties.Include include = ActiveJdbcProperties.current().getInclude();
+		int chunkSize = include.getChunkSize();
+		include.setChunkSize(2);
+		try {
+			assertEquals(new ArrayList<Object>(ids), BatchWriter.delete(Article.class, requested, false));
+		} finally {
+			include.setChunkSize(chunkSize);
+		}
+		assertEquals(0L, ((Number) Base.firstCell("SELECT COUNT(*) FROM article")).longValue());
+		assertTrue(Base.connection().getAutoCommit());
+	}
+
+	@Test
+	void deleteJoinsTheCallersTransaction() {
+		long id = insert("a", null, null);
+		Base.openTransaction();
+		assertEquals(Collections.singletonList(id), BatchWriter.delete(Article.class, Collections.singletonList(id), false));
+		Base.rollbackTransaction();
+		assertEquals(id, ((Number) Base.firstCell("SELECT id FROM article WHERE id = ?", id)).longValue());
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountCacheTest extends H2Support {
+
+	private static final String QUERY = "SELECT COUNT(*) FROM article";
+
+	@Test
+	void servesRepeatedCountsUntilTheTableIsWritten() {
+		AtomicLong calls = new AtomicLong();
+		Supplier<Long> counter = () -> calls.incrementAndGet() * 10;
+		assertEquals(10L, CountCache.count("article", QUERY, new Object[0], counter));
+		assertEquals(10L, CountCache.count("ARTICLE", QUERY, new Object[0], counter));
+		assertEquals(20L, CountCache.count("article", QUERY, new Object[]{1}, counter), "parameters are part of the key");
+
+		CountCache.invalidateOnCommit("article");
+		assertEquals(30L, CountCache.count("article", QUERY, new Object[0], counter));
+		assertEquals(3, calls.get());
+	}
+
+	@Test
+	void invalidatesAfterTheTransactionCompletes() {
+		AtomicLong calls = new AtomicLong();
+		Supplier<Long> counter = calls::incrementAndGet;
+		assertEquals(1L, CountCache.count("article", QUERY, null, counter));
+
+		CountCache.begin();
+		try {
+			CountCache.invalidateOnCommit("article");
+			assertEquals(2L, CountCache.count("article", QUERY, null, counter), "the writing transaction bypasses the cache");
+			assertEquals(3L, CountCache.count("article", QUERY, null, counter));
+		} finally {
+			CountCache.complete();
+		}
+		assertEquals(4L, CountCache.count("article", QUERY, null, counter));
+		assertEquals(4L, CountCache.count("article", QUERY, null, counter));
+	}
+
+	@Test
+	void keepsCountsOfOtherTablesWhileATransactionIsOpen() {
+		AtomicLong calls = new AtomicLong();
+		Supplier<Long> counter = calls::incrementAndGet;
+		assertEquals(1L, CountCache.count("other", QUERY, null, counter));
+		CountCache.begin();
+		try {
+			CountCache.invalidateOnCommit("article");
+			assertEquals(1L, CountCache.count("other", QUERY, null, counter));
+		} finally {
+			CountCache.complete();
+		}
+		assertEquals(1L, CountCache.count("other", QUERY, null, counter));
+	}
+
+	@Test
+	void doesNotCacheACountRacingAWrite() {
+		AtomicLong calls = new AtomicLong();
+		Supplier<Long> racing = () -> {
+			CountCache.invalidate("article");
+			return calls.incrementAndGet();
+		};
+		assertEquals(1L, CountCache.count("article", QUERY, null, racing));
+		assertEquals(2L, CountCache.count("article", QUERY, null, calls::incrementAndGet));
+		assertEquals(2L, CountCache.count("article", QUERY, null, calls::incrementAndGet));
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import org.javalite.activejdbc.Base;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * H2内存库 每个测试前清空测试表的数据
+ */
+abstract class H2Support {
+
+	@BeforeEach
+	void open() {
+		Base.open("org.h2.Driver", "jdbc:h2:mem:activejdbc;DB_CLOSE_DELAY=-1", "sa", "");
+		Base.exec("CREATE TABLE IF NOT EXISTS article (id BIGINT AUTO_INCREMENT PRIMARY KEY, title VARCHAR(100), score DECIMAL(10, 2), "
+				+ "published_at TIMESTAMP, sort_no INT DEFAULT 0 NOT NULL, is_delete INT DEFAULT 0, created_at TIMESTAMP, updated_at TIMESTAMP)");
+		Base.exec("CREATE INDEX IF NOT EXISTS article_sort_no ON article (sort_no, id)");
+		Base.exec("CREATE TABLE IF NOT EXISTS orders (id BIGINT AUTO_INCREMENT PRIMARY KEY, code VARCHAR(20))");
+		Base.exec("CREATE TABLE IF NOT EXISTS order_lines (id BIGINT AUTO_INCREMENT PRIMARY KEY, order_id BIGINT, sku VARCHAR(20))");
+		Base.exec("CREATE TABLE IF NOT EXISTS allocations (id BIGINT AUTO_INCREMENT PRIMARY KEY, order_line_id BIGINT, qty INT)");
+		Base.exec("DELETE FROM article");
+		Base.exec("DELETE FROM allocations");
+		Base.exec("DELETE FROM order_lines");
+		Base.exec("DELETE FROM orders");
+		CountCache.clear();
+	}
+
+	@AfterEach
+	void close() {
+		Base.close();
+	}
+
+	static long insert(String title, String score, String publishedAt) {
+		Base.exec("INSERT INTO article (title, score, published_at) VALUES (?, ?, ?)", title, score == null ? null : new BigDecimal(score),
+				publishedAt == null ? null : Timestamp.valueOf(publishedAt));
+		return ((Number) Base.firstCell("SELECT MAX(id) FROM article")).longValue();
+	}
+
+	/**
+	 * 执行 action 并返回其间在当前链接上创建的语句数
+	 */
+	static int statements(Runnable action) {
+		Connection connection = Base.connection();
+		AtomicInteger count = new AtomicInteger();
+		Connection counting = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+			if (method.getName().equals("prepareStatement") || method.getName().equals("createStatement")) {
+				count.incrementAndGet();
+			}
+			try {
+				return method.invoke(connection, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		});
+		Base.detach();
+		Base.attach(counting);
+		try {
+			action.run();
+		} finally {
+			Base.detach();
+			Base.attach(connection);
+		}
+		return count.get();
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdIndexTest {
+
+	@Test
+	void sameIntegralValueIsOneKeyWhateverItsType() {
+		IdIndex<List<String>> index = new IdIndex<>(1);
+		index.computeIfAbsent(7L, ArrayList::new).add("long");
+		index.computeIfAbsent(7, ArrayList::new).add("int");
+		index.computeIfAbsent(new BigDecimal("7.00"), ArrayList::new).add("decimal");
+		index.computeIfAbsent(BigInteger.valueOf(7), ArrayList::new).add("big");
+		assertEquals(4, index.get((short) 7).size());
+	}
+
+	@Test
+	void otherIdsFallBackToEquals() {
+		IdIndex<String> index = new IdIndex<>(1);
+		index.computeIfAbsent("7", () -> "string");
+		index.computeIfAbsent(new BigDecimal("7.5"), () -> "fraction");
+		index.computeIfAbsent(new BigDecimal("1e30"), () -> "huge");
+		assertNull(index.get(7L));
+		assertEquals("string", index.get("7"));
+		assertEquals("fraction", index.get(new BigDecimal("7.5")));
+		assertEquals("huge", index.get(new BigDecimal("1e30")));
+		assertFalse(IdIndex.isIntegral(BigInteger.ONE.shiftLeft(63)));
+	}
+
+	@Test
+	void growsPastItsExpectedSize() {
+		IdIndex<Long> index = new IdIndex<>(1);
+		for (long id = 0; id < 1000; id++) {
+			long value = id;
+			index.computeIfAbsent(id * 31, () -> value);
+		}
+		for (long id = 0; id < 1000; id++) {
+			assertEquals(id, index.get(id * 31));
+		}
+		assertNull(index.get(1L));
+	}
+}
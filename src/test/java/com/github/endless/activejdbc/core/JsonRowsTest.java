@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.javalite.activejdbc.ModelDelegate;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonRowsTest extends H2Support {
+
+	private final ObjectMapper mapper = JsonRows.objectMapper();
+
+	@Test
+	void writesTheSameJsonAsToMaps() throws Exception {
+		insert("a", "1.25", "2021-01-01 10:00:00");
+		insert(null, null, null);
+		insert("c", "3", "2021-01-03 00:00:00.5");
+		String expected = mapper.writeValueAsString(articles().toMaps());
+
+		JsonRows json = articles().toJsonRows(10);
+		assertEquals(3, json.size());
+		assertFalse(json.hasMore());
+		assertEquals(mapper.readTree(expected), mapper.readTree(json.toJson()));
+		assertEquals(mapper.readTree(expected), mapper.readTree(mapper.writeValueAsString(json)));
+	}
+
+	@Test
+	void stopsAtTheLimit() {
+		insert("a", null, null);
+		insert("b", null, null);
+		JsonRows json = articles().toJsonRows(1);
+		assertEquals(1, json.size());
+		assertTrue(json.hasMore());
+		assertEquals("a", json.get(0).get("title"));
+	}
+
+	private static LazyList<Article> articles() {
+		return new LazyModelList<Article>(null, ModelDelegate.metaModelOf(Article.class), null).orderBy("id");
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.github.endless.activejdbc.query.PageQuery;
+import org.javalite.activejdbc.Base;
+import org.javalite.activejdbc.MetaModel;
+import org.javalite.activejdbc.ModelDelegate;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetPaginationTest extends H2Support {
+
+	@Test
+	void pagesThroughAllRowsInSortOrder() {
+		long a = insert("a", 2);
+		long b = insert("b", 5);
+		long c = insert("c", 1);
+		long d = insert("d", 2);
+		long e = insert("e", 5);
+		long f = insert("f", 3);
+		long g = insert("g", 1);
+		assertEquals(Arrays.asList(c, g, a, d, f, b, e), pages("sort_no"));
+		assertEquals(Arrays.asList(e, b, f, d, a, g, c), pages("sort_no desc"));
+		assertEquals(Arrays.asList(a, b, c, d, e, f, g), pages(null));
+	}
+
+	@Test
+	void rejectsNullableSortColumns() {
+		insert("a", 1);
+		assertThrows(IllegalArgumentException.class, () -> pages("score"));
+	}
+
+	@Test
+	void getPageReturnsPageSizeRows() {
+		for (int i = 0; i < 5; i++) {
+			insert("t" + i, i);
+		}
+		Paginator<Article> paginator = Paginator.<Article>instance().modelClass(Article.class).pageSize(3).query("*").orderBy("sort_no")
+				.cursor("").create();
+		assertEquals(3, paginator.getPage(1).size());
+	}
+
+	@Test
+	void seekUsesTheSortIndexWithoutSorting() {
+		for (int i = 0; i < 20; i++) {
+			insert("t" + i, i % 4);
+		}
+		Paginator.Keyset keyset = Paginator.Keyset.of(ModelDelegate.metaModelOf(Article.class), "sort_no");
+		Object[] values = {2, 5L};
+		String sql = "EXPLAIN SELECT * FROM article WHERE " + keyset.condition(values) + " ORDER BY " + keyset.orderBy() + " LIMIT 4";
+		String plan = String.valueOf(Base.firstCell(sql, keyset.params(values))).toUpperCase(Locale.ROOT);
+		assertTrue(plan.contains("ARTICLE_SORT_NO: SORT_NO >="), plan);
+		assertTrue(plan.contains("INDEX SORTED"), plan);
+	}
+
+	@Test
+	void cursorKeepsColumnTypes() {
+		long id = insert("a", "12.50", "2021-03-04 05:06:07.123");
+		MetaModel metaModel = ModelDelegate.metaModelOf(Article.class);
+		Article last = ModelDelegate.findById(Article.class, id);
+
+		Paginator.Keyset byTime = Paginator.Keyset.of(metaModel, "published_at desc");
+		Object[] values = byTime.decode(byTime.next(last));
+		assertEquals(Timestamp.valueOf("2021-03-04 05:06:07.123"), values[0]);
+		assertEquals(id, ((Number) values[1]).longValue());
+
+		Paginator.Keyset byScore = Paginator.Keyset.of(metaModel, "score");
+		assertEquals(new BigDecimal("12.50"), byScore.decode(byScore.next(last))[0]);
+	}
+
+	@Test
+	void rejectsMalformedCursors() {
+		Paginator.Keyset keyset = Paginator.Keyset.of(ModelDelegate.metaModelOf(Article.class), "score");
+		assertNull(keyset.decode(""));
+		assertThrows(IllegalArgumentException.class, () -> keyset.decode("not-a-cursor"));
+		assertThrows(IllegalArgumentException.class, () -> Paginator.Keyset.of(ModelDelegate.metaModelOf(Article.class), "missing"));
+	}
+
+	private static long insert(String title, int sortNo) {
+		Base.exec("INSERT INTO article (title, sort_no) VALUES (?, ?)", title, sortNo);
+		return ((Number) Base.firstCell("SELECT MAX(id) FROM article")).longValue();
+	}
+
+	private static List<Long> pages(String orderBy) {
+		List<Long> ids = new ArrayList<>();
+		String cursor = "";
+		for (int page = 0; cursor != null; page++) {
+			assertTrue(page < 10, "cursor does not advance");
+			Paginator<Article> paginator = Paginator.<Article>instance().modelClass(Article.class).pageSize(3).query("*").orderBy(orderBy)
+					.cursor(cursor).create();
+			PageQuery<Map<String, Object>> result = paginator.apply();
+			for (Map<String, Object> row : result.getRows()) {
+				ids.add(((Number) row.get("id")).longValue());
+			}
+			cursor = result.getCursor();
+		}
+		return ids;
+	}
+}
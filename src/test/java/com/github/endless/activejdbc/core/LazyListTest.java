@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import org.javalite.activejdbc.Base;
+import org.javalite.activejdbc.ModelDelegate;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyListTest extends H2Support {
+
+	@Test
+	void includeAttachesChildrenWithoutExtraQueries() {
+		for (int o = 0; o < 3; o++) {
+			Base.exec("INSERT INTO orders (code) VALUES (?)", "o" + o);
+			Object order = Base.firstCell("SELECT MAX(id) FROM orders");
+			for (int l = 0; l < o; l++) {
+				Base.exec("INSERT INTO order_lines (order_id, sku) VALUES (?, ?)", order, "s" + l);
+			}
+		}
+		List<Order> orders = new LazyModelList<Order>(null, ModelDelegate.metaModelOf(Order.class), null).orderBy("id").include(OrderLine.class);
+		assertEquals(2, statements(orders::size), "one query for orders, one IN query for all lines");
+		int queries = statements(() -> {
+			for (int o = 0; o < orders.size(); o++) {
+				List<OrderLine> lines = orders.get(o).getAll(OrderLine.class);
+				assertEquals(o, lines.size());
+				for (OrderLine line : lines) {
+					assertEquals(orders.get(o).getId(), line.get("order_id"));
+				}
+			}
+		});
+		assertEquals(0, queries);
+	}
+}
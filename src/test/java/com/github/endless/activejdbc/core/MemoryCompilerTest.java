@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import org.javalite.activejdbc.Base;
+import org.javalite.activejdbc.Model;
+import org.javalite.activejdbc.Registry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryCompilerTest extends H2Support {
+
+	@Test
+	void concurrentFirstAccessRegistersLazyTableOnce() throws Exception {
+		GenericApplicationContext context = new GenericApplicationContext();
+		context.refresh();
+		new ApplicationContextHelper().setApplicationContext(context);
+		Base.exec("CREATE TABLE IF NOT EXISTS lazy_item (id BIGINT PRIMARY KEY, name VARCHAR(20))");
+		MetaTable metaTable = new MetaTable();
+		metaTable.setDbName("default");
+		metaTable.setTableName("lazy_item");
+		metaTable.setIdName("id");
+		metaTable.setColumns(MemoryCompiler.fetchMetaParams(Base.connection().getMetaData(), "H2", "LAZY_ITEM"));
+		MemoryCompiler.addLazyTable(metaTable, "H2");
+		assertNull(Registry.instance().getMetaModel("lazy_item"));
+
+		int threads = 8;
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Class<Model>>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit((Callable<Class<Model>>) () -> {
+					start.await();
+					return ContextHelper.modelClass("lazy_item");
+				}));
+			}
+			start.countDown();
+			Set<Class<Model>> classes = new HashSet<>();
+			for (Future<Class<Model>> future : futures) {
+				classes.add(future.get());
+			}
+			assertEquals(1, classes.size());
+			Class<Model> modelClass = classes.iterator().next();
+			assertSame(modelClass, Registry.instance().getMetaModel("lazy_item").getModelClass());
+			assertTrue(Registry.instance().getMetaModel("lazy_item").getColumnMetadata().containsKey("name"));
+			assertSame(modelClass, ContextHelper.modelClass("LAZY_ITEM"));
+		} finally {
+			executor.shutdownNow();
+			new ApplicationContextHelper().setApplicationContext(null);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelStreamTest extends H2Support {
+
+	@Test
+	void streamsWithoutARequestUsingSortAndFieldsFromInput() {
+		RequestContextHolder.resetRequestAttributes();
+		insert("b", "2", null);
+		insert("c", "3", null);
+		insert("a", "1", null);
+		Map<String, Object> input = new HashMap<>();
+		input.put("sort", "title");
+		input.put("order", "desc");
+		input.put("fields", "title");
+		List<Article> articles;
+		try (Stream<Article> stream = ContextHelper.stream(Article.class, input)) {
+			articles = stream.collect(Collectors.toList());
+		}
+		assertEquals("c,b,a", articles.stream().map(article -> article.getString("title")).collect(Collectors.joining(",")));
+		assertNotNull(articles.get(0).getId());
+		assertFalse(articles.get(0).toMap().containsKey("score"), "only the requested fields are selected");
+	}
+}
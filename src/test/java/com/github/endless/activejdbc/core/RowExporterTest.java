@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.endless.activejdbc.query.ExportFormat;
+import org.javalite.activejdbc.Base;
+import org.javalite.activejdbc.ModelDelegate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowExporterTest extends H2Support {
+
+	private static final String NOTE = "line one, \"quoted\"\nline two";
+	private static final byte[] DATA = {1, 2, 3, (byte) 0xff};
+
+	@BeforeEach
+	void attachments() {
+		Base.exec("CREATE TABLE IF NOT EXISTS attachment (id BIGINT PRIMARY KEY, note CLOB, data BLOB)");
+		Base.exec("DELETE FROM attachment");
+		Base.exec("INSERT INTO attachment (id, note, data) VALUES (?, ?, ?)", 1, NOTE, DATA);
+	}
+
+	@Test
+	void writesLobColumnsAsNdjson() throws IOException {
+		String output = export(ExportFormat.NDJSON);
+		assertTrue(output.endsWith("\n"));
+		JsonNode row = new ObjectMapper().readTree(output.trim());
+		assertEquals(1, row.get("id").asLong());
+		assertEquals(NOTE, row.get("note").asText());
+		assertArrayEquals(DATA, row.get("data").binaryValue());
+	}
+
+	@Test
+	void writesLobColumnsAsCsv() throws IOException {
+		String output = export(ExportFormat.CSV);
+		String expected = "id,note,data\r\n1,\"line one, \"\"quoted\"\"\nline two\"," + Base64.getEncoder().encodeToString(DATA) + "\r\n";
+		assertEquals(expected, output);
+	}
+
+	private static String export(ExportFormat format) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (RowCursor cursor = RowCursor.open(ModelDelegate.metaModelOf(Article.class), 10, "SELECT id, note, data FROM attachment ORDER BY id")) {
+			assertEquals(1, RowExporter.write(cursor, format, out, 10));
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import org.javalite.activejdbc.Base;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementCacheTest extends H2Support {
+
+	private static final String SQL = "SELECT id FROM article ORDER BY id";
+
+	@Test
+	void resetsStatementStateBeforeReuse() throws Exception {
+		insert("a", null, null);
+		insert("b", null, null);
+		Connection connection = StatementCache.wrap(Base.connection());
+		PreparedStatement first = connection.prepareStatement(SQL);
+		first.setMaxRows(1);
+		first.setQueryTimeout(5);
+		assertEquals(1, count(first));
+		first.close();
+
+		PreparedStatement second = connection.prepareStatement(SQL);
+		assertEquals(0, second.getMaxRows());
+		assertEquals(0, second.getQueryTimeout());
+		assertEquals(2, count(second));
+		second.close();
+	}
+
+	@Test
+	void uncachedConnectionBypassesTheCache() throws Exception {
+		Connection raw = Base.connection();
+		Connection connection = StatementCache.wrap(raw);
+		assertSame(raw, StatementCache.uncached(connection));
+		assertSame(raw, StatementCache.uncached(raw));
+	}
+
+	private static int count(PreparedStatement statement) throws Exception {
+		int rows = 0;
+		try (ResultSet rs = statement.executeQuery()) {
+			while (rs.next()) {
+				rows++;
+			}
+		}
+		return rows;
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021. Endless All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *
+ */
+
+package com.github.endless.activejdbc.core;
+
+import com.github.endless.activejdbc.configuration.ActiveJdbcProperties;
+import org.javalite.activejdbc.Base;
+import org.javalite.activejdbc.ModelDelegate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeLoaderTest extends H2Support {
+
+	private static final int ORDERS = 3, LINES = 2, ALLOCATIONS = 2;
+
+	@BeforeEach
+	void tree() {
+		for (int o = 0; o < ORDERS; o++) {
+			Base.exec("INSERT INTO orders (code) VALUES (?)", "o" + o);
+			long order = lastId("orders");
+			for (int l = 0; l < LINES; l++) {
+				Base.exec("INSERT INTO order_lines (order_id, sku) VALUES (?, ?)", order, "s" + l);
+				long line = lastId("order_lines");
+				for (int a = 0; a < ALLOCATIONS; a++) {
+					Base.exec("INSERT INTO allocations (order_line_id, qty) VALUES (?, ?)", line, a + 1);
+				}
+			}
+		}
+	}
+
+	@Test
+	void issuesOneQueryPerLevelAndAttachesChildren() {
+		List<Order> orders = ModelDelegate.findAll(Order.class).orderBy("id").load();
+		assertEquals(2, statements(() -> TreeLoader.load(orders, 3)), "orders > lines > allocations");
+		int queries = statements(() -> {
+			for (Order order : orders) {
+				List<OrderLine> lines = order.getAll(OrderLine.class);
+				assertEquals(LINES, lines.size());
+				for (OrderLine line : lines) {
+					assertEquals(order.getId(), line.get("order_id"));
+					assertEquals(ALLOCATIONS, line.getAll(Allocation.class).size());
+				}
+			}
+		});
+		assertEquals(0, queries, "children are attached, not queried again");
+	}
+
+	@Test
+	void chunksInQueriesByTheParameterLimit() {
+		List<Order> orders = ModelDelegate.findAll(Order.class).load();
+		ActiveJdbcProperties.Include include = ActiveJdbcProperties.current().getInclude();
+		int chunkSize = include.getChunkSize();
+		include.setChunkSize(2);
+		try {
+			// 3 个订单分 2 批, 6 个明细分 3 批
+			assertEquals(5, statements(() -> TreeLoader.load(orders, 3)));
+		} finally {
+			include.setChunkSize(chunkSize);
+		}
+		assertEquals(LINES, orders.get(ORDERS - 1).getAll(OrderLine.class).size());
+	}
+
+	@Test
+	void stopsAtMaxDepth() {
+		List<Order> orders = ModelDelegate.findAll(Order.class).load();
+		assertEquals(1, statements(() -> TreeLoader.load(orders, 1)));
+		OrderLine line = orders.get(0).getAll(OrderLine.class).get(0);
+		assertEquals(1, statements(() -> line.getAll(Allocation.class).size()), "allocations below max depth are not loaded");
+	}
+
+	private static long lastId(String table) {
+		return ((Number) Base.firstCell("SELECT MAX(id) FROM " + table)).longValue();
+	}
+}